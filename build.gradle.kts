@@ -2,6 +2,7 @@ plugins {
   id("java")
   id("org.jetbrains.kotlin.jvm") version "1.9.21"
   id("org.jetbrains.intellij") version "1.16.1"
+  id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.cfin.novel"
@@ -11,6 +12,17 @@ repositories {
   mavenCentral()
 }
 
+dependencies {
+  testImplementation("junit:junit:4.13.2")
+}
+
+// 基准测试在 src/jmh/java 中，运行 ./gradlew jmh
+jmh {
+  warmupIterations.set(3)
+  iterations.set(5)
+  fork.set(1)
+}
+
 // Configure Gradle IntelliJ Plugin
 // Read more: https://plugins.jetbrains.com/docs/intellij/tools-gradle-intellij-plugin.html
 intellij {
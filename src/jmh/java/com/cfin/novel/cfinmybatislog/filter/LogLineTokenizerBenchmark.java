@@ -0,0 +1,177 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 解析 Preparing / Parameters 行并取出内容：{@link LogLineTokenizer} 与引入它之前的 extractSql / extractParams 对比
+ * <p>
+ * {@code spring} 为 Spring Boot 默认格式，{@code logback} 为 logback 常见格式，
+ * {@code lowercase} 的标记为小写，旧方法只能走正则匹配的分支。
+ * 旧方法去掉了每一步的 LOG.info，否则拼接日志文本的开销远大于解析本身。
+ * <p>
+ * 运行：./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LogLineTokenizerBenchmark {
+
+    private static final int LINES = 2;
+
+    @Param({"spring", "logback", "lowercase"})
+    public String format;
+
+    private String[] lines;
+    private final LogLine logLine = new LogLine();
+
+    @Setup
+    public void setUp() {
+        lines = lines(format);
+    }
+
+    /**
+     * 单次扫描得到行类型、线程名、Mapper 语句ID和内容
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public int tokenize() {
+        int sink = 0;
+        for (String line : lines) {
+            LogLine result = LogLineTokenizer.tokenize(line, logLine);
+            sink += result.payload().length() + result.getKind().ordinal();
+        }
+        return sink;
+    }
+
+    /**
+     * 已知行类型时只取内容，相当于原来的 extractSql / extractParams
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public int baselineExtract() {
+        return Baseline.extractSql(lines[0]).length() + Baseline.extractParams(lines[1]).length();
+    }
+
+    /**
+     * 原来 processLine 的判断行类型的正则和 contains，再取内容
+     */
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public int baselineClassifyAndExtract() {
+        int sink = 0;
+        for (String line : lines) {
+            sink += Baseline.classifyAndExtract(line).length();
+        }
+        return sink;
+    }
+
+    static String[] lines(String format) {
+        String sql = "SELECT id, name, status, created_at FROM t_user WHERE id = ? AND status = ?";
+        String params = "100001(Long), ACTIVE(String)";
+        switch (format) {
+            case "logback":
+                return new String[]{
+                        "12:00:00.123 [http-nio-8080-exec-1] DEBUG c.e.mapper.UserMapper.selectById - ==>  Preparing: " + sql,
+                        "12:00:00.124 [http-nio-8080-exec-1] DEBUG c.e.mapper.UserMapper.selectById - ==> Parameters: " + params
+                };
+            case "lowercase":
+                return new String[]{
+                        "12:00:00.123 [http-nio-8080-exec-1] DEBUG c.e.mapper.UserMapper.selectById - ==>  preparing: " + sql,
+                        "12:00:00.124 [http-nio-8080-exec-1] DEBUG c.e.mapper.UserMapper.selectById - ==> parameters: " + params
+                };
+            default:
+                return new String[]{
+                        "2024-05-01 12:00:00.123 DEBUG 12345 --- [nio-8080-exec-1] c.e.mapper.UserMapper.selectById         : ==>  Preparing: " + sql,
+                        "2024-05-01 12:00:00.124 DEBUG 12345 --- [nio-8080-exec-1] c.e.mapper.UserMapper.selectById         : ==> Parameters: " + params
+                };
+        }
+    }
+
+    /**
+     * 引入 {@link LogLineTokenizer} 之前 MyBatisLogFilter 中的实现，去掉了日志输出
+     */
+    static final class Baseline {
+        private static final Pattern CLEAR_SQL_PATTERN = Pattern.compile("(?i)(Preparing:|==>\\s*Preparing:|\\[\\s*mybatis\\s*\\].*?Preparing:|Executing query|Execute SQL)");
+        private static final Pattern PARAMETERS_PATTERN = Pattern.compile("(?i)(Parameters:|==>\\s*Parameters:|\\[\\s*mybatis\\s*\\].*?Parameters:)");
+        private static final Pattern SIMPLE_PARAM_PATTERN = Pattern.compile("(?i)null|\\d+|(\\d+\\.\\d+)|'.*?'|true|false");
+        private static final Pattern SPRING_BOOT_SQL = Pattern.compile("(?i)(\\[\\s*\\w+\\s*\\]\\s*DEBUG\\s*.*?Preparing:|.*?DEBUG.*?Preparing:|.*?com\\.\\w+\\.\\w+\\.mapper.*?Preparing:|.*?org\\.apache\\.ibatis\\..*?Preparing:|.*?mybatis\\..*?Preparing:)");
+        private static final Pattern SPRING_BOOT_PARAMS = Pattern.compile("(?i)(\\[\\s*\\w+\\s*\\]\\s*DEBUG\\s*.*?Parameters:|.*?DEBUG.*?Parameters:|.*?com\\.\\w+\\.\\w+\\.mapper.*?Parameters:|.*?org\\.apache\\.ibatis\\..*?Parameters:|.*?mybatis\\..*?Parameters:)");
+
+        private Baseline() {
+        }
+
+        static String classifyAndExtract(String line) {
+            if (CLEAR_SQL_PATTERN.matcher(line).find() || SPRING_BOOT_SQL.matcher(line).find()
+                    || line.contains("Preparing: ") || line.contains("==>  Preparing: ")) {
+                return extractSql(line);
+            }
+            if (PARAMETERS_PATTERN.matcher(line).find() || SPRING_BOOT_PARAMS.matcher(line).find()
+                    || line.contains("Parameters: ") || line.contains("==> Parameters: ")) {
+                return extractParams(line);
+            }
+            return "";
+        }
+
+        static String extractSql(String text) {
+            int index = -1;
+            if (text.contains("Preparing:")) {
+                index = text.indexOf("Preparing:") + "Preparing:".length();
+            } else if (text.contains("==> Preparing:")) {
+                index = text.indexOf("==> Preparing:") + "==> Preparing:".length();
+            } else if (text.contains("==>  Preparing:")) {
+                index = text.indexOf("==>  Preparing:") + "==>  Preparing:".length();
+            } else if (text.contains("Execute SQL")) {
+                index = text.indexOf("Execute SQL") + "Execute SQL".length();
+            } else if (text.contains("Executing query")) {
+                index = text.indexOf("Executing query") + "Executing query".length();
+            } else if (text.matches("(?i).*DEBUG.*Preparing:.*")) {
+                index = text.toLowerCase().lastIndexOf("preparing:") + "preparing:".length();
+            }
+
+            if (index > 0 && index < text.length()) {
+                return text.substring(index).trim();
+            }
+
+            String[] sqlKeywords = {"SELECT", "UPDATE", "DELETE"};
+            for (String keyword : sqlKeywords) {
+                int keywordIndex = text.toUpperCase().indexOf(keyword);
+                if (keywordIndex >= 0) {
+                    return text.substring(keywordIndex).trim();
+                }
+            }
+            return text.trim();
+        }
+
+        static String extractParams(String text) {
+            int index = -1;
+            if (text.contains("Parameters:")) {
+                index = text.indexOf("Parameters:") + "Parameters:".length();
+            } else if (text.contains("==> Parameters:")) {
+                index = text.indexOf("==> Parameters:") + "==> Parameters:".length();
+            } else if (text.contains("==>  Parameters:")) {
+                index = text.indexOf("==>  Parameters:") + "==>  Parameters:".length();
+            } else if (text.matches("(?i).*DEBUG.*Parameters:.*")) {
+                index = text.toLowerCase().lastIndexOf("parameters:") + "parameters:".length();
+            }
+
+            if (index > 0 && index < text.length()) {
+                return text.substring(index).trim();
+            }
+            if (SIMPLE_PARAM_PATTERN.matcher(text).find()) {
+                return text.trim();
+            }
+            return text.trim();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析 1、50、5000 个参数的 Parameters 行，参数依次为 Long、含 ", (" 的 String、null、Timestamp
+ * <p>
+ * 运行：./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParameterParserBenchmark {
+
+    @Param({"1", "50", "5000"})
+    public int parameters;
+
+    private String line;
+
+    @Setup
+    public void setUp() {
+        line = parametersLine(parameters);
+    }
+
+    @Benchmark
+    public SqlParameters parse() {
+        return ParameterParser.parse(line);
+    }
+
+    /**
+     * 解析后格式化为显示用的参数列表
+     */
+    @Benchmark
+    public String parseAndFormat() {
+        return ParameterParser.parse(line).format();
+    }
+
+    static String parametersLine(int count) {
+        StringBuilder line = new StringBuilder(count * 24);
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                line.append(", ");
+            }
+            switch (i % 4) {
+                case 0:
+                    line.append(100000 + i).append("(Long)");
+                    break;
+                case 1:
+                    line.append("name, (alias ").append(i).append(")(String)");
+                    break;
+                case 2:
+                    line.append("null");
+                    break;
+                default:
+                    line.append("2024-05-01 12:00:00.0(Timestamp)");
+                    break;
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Style;
+import javax.swing.text.StyleConstants;
+import javax.swing.text.StyledDocument;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 向文档插入 1000 条SQL执行（SQL、参数、完整SQL、耗时、分隔线），每次刷新插入 4 或 50 条
+ * <p>
+ * {@link #insertString()} 对普通文档逐段调用 insertString，{@link #insertRuns()} 对 {@link LogDocument} 一次批量插入。
+ * 只测文档本身，不含视图布局和光标移动。
+ * <p>
+ * 运行：./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LogDocumentBenchmark {
+
+    private static final int STATEMENTS = 1000;
+
+    private static final String[] STYLES = {
+            "keyword", "table", "operator", "number", "string", "type", "null",
+            "label-bold", "separator", "complete-sql", "param", "time"
+    };
+
+    @Param({"4", "50"})
+    public int statementsPerFlush;
+
+    private final List<StyledRuns> batches = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        batches.clear();
+        for (int i = 0; i < STATEMENTS; i += statementsPerFlush) {
+            StyledRuns batch = new StyledRuns();
+            for (int j = i; j < Math.min(i + statementsPerFlush, STATEMENTS); j++) {
+                appendStatement(batch, j);
+            }
+            batches.add(batch);
+        }
+    }
+
+    @Benchmark
+    public StyledDocument insertString() throws BadLocationException {
+        return insertAll(new DefaultStyledDocument());
+    }
+
+    @Benchmark
+    public StyledDocument insertRuns() throws BadLocationException {
+        return insertAll(new LogDocument());
+    }
+
+    private StyledDocument insertAll(StyledDocument doc) throws BadLocationException {
+        installStyles(doc);
+        for (StyledRuns batch : batches) {
+            batch.insertInto(doc, doc.getLength());
+        }
+        return doc;
+    }
+
+    private static void installStyles(StyledDocument doc) {
+        Style parent = doc.addStyle("default", null);
+        StyleConstants.setFontFamily(parent, "Monospaced");
+        for (int i = 0; i < STYLES.length; i++) {
+            Style style = doc.addStyle(STYLES[i], parent);
+            StyleConstants.setForeground(style, new Color(0x202020 + i * 0x101010));
+            StyleConstants.setBold(style, STYLES[i].endsWith("-bold"));
+        }
+    }
+
+    /**
+     * 与日志窗格一条SQL执行的片段结构相近
+     */
+    private static void appendStatement(StyledRuns runs, int index) {
+        runs.mark(index);
+        runs.add("SQL: ", "label-bold");
+        runs.add("SELECT", "keyword");
+        runs.add(" id, name, status ", "table");
+        runs.add("FROM", "keyword");
+        runs.add(" t_user ", "table");
+        runs.add("WHERE", "keyword");
+        runs.add(" id ", "table");
+        runs.add("=", "operator");
+        runs.add(" ? ", "table");
+        runs.add("AND", "keyword");
+        runs.add(" status ", "table");
+        runs.add("=", "operator");
+        runs.add(" ?\n", "table");
+        runs.add("Params: ", "label-bold");
+        runs.add(String.valueOf(100000 + index), "number");
+        runs.add("(Long)", "type");
+        runs.add(", ", "param");
+        runs.add("ACTIVE", "string");
+        runs.add("(String)\n", "type");
+        runs.add("Complete SQL: ", "label-bold");
+        runs.add("SELECT id, name, status FROM t_user WHERE id = " + (100000 + index) + " AND status = 'ACTIVE'\n", "complete-sql");
+        runs.add("Time: ", "label-bold");
+        runs.add((index % 50) + " ms\n", "time");
+        runs.add("------------------------------------------------------------\n", "separator");
+    }
+}
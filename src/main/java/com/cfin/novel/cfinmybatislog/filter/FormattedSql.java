@@ -0,0 +1,23 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+/**
+ * 按 {@link SqlLayout} 排版后的SQL文本及其词法片段，片段偏移基于排版后的文本
+ */
+public final class FormattedSql {
+
+    private final String text;
+    private final SqlTokens tokens;
+
+    FormattedSql(String text, SqlTokens tokens) {
+        this.text = text;
+        this.tokens = tokens;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public SqlTokens getTokens() {
+        return tokens;
+    }
+}
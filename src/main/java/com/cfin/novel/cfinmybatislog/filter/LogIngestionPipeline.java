@@ -0,0 +1,322 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 日志行摄取管道：有界多生产者/单消费者环形缓冲区 + 专用消费线程
+ * <p>
+ * 控制台过滤线程作为生产者把候选SQL行写入环形缓冲区，唯一的消费线程按批次顺序取出并交给
+ * {@link BatchConsumer} 处理，从而保证 Preparing / Parameters 等行的原始顺序，且不再占用IDE共享线程池。
+ * 消费线程按需启动，长时间空闲后自动退出，下次有数据时重新启动。
+ */
+public final class LogIngestionPipeline {
+    private static final Logger LOG = Logger.getInstance(LogIngestionPipeline.class);
+
+    // BLOCK策略下生产者最长等待时间，超时后丢弃该行，避免消费线程异常时卡死控制台
+    private static final long MAX_BLOCK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    // 消费线程空闲多久后退出
+    private static final long IDLE_EXIT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    // SAMPLE策略下，队列满时每隔多少行保留一行
+    private static final int SAMPLE_RATE = 16;
+
+    /**
+     * 队列满时的处理策略
+     */
+    public enum OverflowPolicy {
+        /** 阻塞生产者直到有空位（最长等待 {@link #MAX_BLOCK_NANOS}） */
+        BLOCK,
+        /** 丢弃最旧的一行，为新行腾出空间 */
+        DROP_OLDEST,
+        /** 每 {@link #SAMPLE_RATE} 行溢出保留一行（替换最旧的），其余丢弃 */
+        SAMPLE
+    }
+
+    /**
+     * 批量消费者，仅在消费线程中被调用
+     */
+    public interface BatchConsumer {
+        /**
+         * 处理一批日志行，数组只在本次调用期间有效
+         */
+        void onBatch(String[] lines, int count);
+
+        /**
+         * 队列为空时回调，用于处理定时任务
+         * @return 距下一次需要唤醒的纳秒数，小于等于0表示没有定时任务
+         */
+        default long onIdle(long nowNanos) {
+            return 0;
+        }
+    }
+
+    private final String name;
+    private final int mask;
+    private final String[] buffer;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    private final int batchSize;
+    private final OverflowPolicy policy;
+    private final BatchConsumer consumer;
+
+    // 统计计数器
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong maxDepth = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    // 消费线程状态
+    private final AtomicBoolean consumerActive = new AtomicBoolean(false);
+    private volatile Thread consumerThread;
+    private volatile boolean consumerParked;
+    private volatile boolean shutdown;
+
+    /**
+     * @param name 消费线程名称
+     * @param capacity 缓冲区容量，会向上取整为2的幂
+     * @param batchSize 每批最多处理的行数
+     * @param policy 队列满时的处理策略
+     * @param consumer 批量消费者
+     */
+    public LogIngestionPipeline(String name, int capacity, int batchSize, OverflowPolicy policy, BatchConsumer consumer) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.name = name;
+        this.mask = size - 1;
+        this.buffer = new String[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.batchSize = Math.max(1, batchSize);
+        this.policy = policy;
+        this.consumer = consumer;
+    }
+
+    /**
+     * 提交一行日志，可被多个线程并发调用
+     * @return 是否成功入队（被丢弃时返回false）
+     */
+    public boolean offer(String line) {
+        if (shutdown || line == null) {
+            return false;
+        }
+
+        boolean accepted = tryEnqueue(line) || handleOverflow(line);
+        if (accepted) {
+            enqueued.incrementAndGet();
+            long depth = tail.get() - head.get();
+            if (depth > maxDepth.get()) {
+                maxDepth.accumulateAndGet(depth, Math::max);
+            }
+        } else {
+            dropped.incrementAndGet();
+        }
+        signalConsumer();
+        return accepted;
+    }
+
+    private boolean handleOverflow(String line) {
+        switch (policy) {
+            case DROP_OLDEST:
+                return evictOldestAndEnqueue(line);
+            case SAMPLE:
+                if (overflowCount.incrementAndGet() % SAMPLE_RATE != 0) {
+                    return false;
+                }
+                return evictOldestAndEnqueue(line);
+            case BLOCK:
+            default:
+                long deadline = System.nanoTime() + MAX_BLOCK_NANOS;
+                do {
+                    signalConsumer();
+                    LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+                    if (tryEnqueue(line)) {
+                        return true;
+                    }
+                } while (!shutdown && System.nanoTime() < deadline);
+                return false;
+        }
+    }
+
+    private boolean evictOldestAndEnqueue(String line) {
+        // 与消费线程竞争时可能需要多次尝试
+        for (int attempt = 0; attempt < 4; attempt++) {
+            if (poll() != null) {
+                dropped.incrementAndGet();
+            }
+            if (tryEnqueue(line)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean tryEnqueue(String line) {
+        while (true) {
+            long pos = tail.get();
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    buffer[index] = line;
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                // 队列已满
+                return false;
+            }
+            // 其他生产者抢先占用了该位置，重试
+        }
+    }
+
+    /**
+     * 取出最旧的一行；除消费线程外，DROP_OLDEST/SAMPLE策略下生产者也会调用
+     */
+    private String poll() {
+        while (true) {
+            long pos = head.get();
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    String line = buffer[index];
+                    buffer[index] = null;
+                    sequences.set(index, pos + mask + 1);
+                    return line;
+                }
+            } else if (diff < 0) {
+                // 队列为空
+                return null;
+            }
+        }
+    }
+
+    private void signalConsumer() {
+        if (shutdown) {
+            return;
+        }
+        if (!consumerActive.get() && consumerActive.compareAndSet(false, true)) {
+            startConsumer();
+        } else if (consumerParked) {
+            LockSupport.unpark(consumerThread);
+        }
+    }
+
+    private void startConsumer() {
+        Thread thread = new Thread(this::consumeLoop, name);
+        thread.setDaemon(true); // 设置为守护线程，不阻止JVM退出
+        consumerThread = thread;
+        thread.start();
+    }
+
+    private void consumeLoop() {
+        String[] batch = new String[batchSize];
+        long idleSince = System.nanoTime();
+        try {
+            while (!shutdown) {
+                int count = 0;
+                String line;
+                while (count < batchSize && (line = poll()) != null) {
+                    batch[count++] = line;
+                }
+
+                if (count > 0) {
+                    try {
+                        consumer.onBatch(batch, count);
+                    } catch (Exception e) {
+                        LOG.error("Error processing log batch in " + name, e);
+                    }
+                    for (int i = 0; i < count; i++) {
+                        batch[i] = null;
+                    }
+                    idleSince = System.nanoTime();
+                    continue;
+                }
+
+                long now = System.nanoTime();
+                long wakeUpNanos;
+                try {
+                    wakeUpNanos = consumer.onIdle(now);
+                } catch (Exception e) {
+                    LOG.error("Error running idle tasks in " + name, e);
+                    wakeUpNanos = 0;
+                }
+
+                if (wakeUpNanos <= 0 && now - idleSince >= IDLE_EXIT_NANOS) {
+                    // 长时间空闲且没有定时任务，退出线程；退出前再检查一次，防止丢失唤醒
+                    consumerActive.set(false);
+                    if (size() == 0 || !consumerActive.compareAndSet(false, true)) {
+                        LOG.info(name + " idle, stopping consumer. " + getStatsSummary());
+                        return;
+                    }
+                    idleSince = now;
+                    continue;
+                }
+
+                consumerParked = true;
+                if (size() == 0) {
+                    LockSupport.parkNanos(this, wakeUpNanos > 0 ? wakeUpNanos : IDLE_EXIT_NANOS);
+                }
+                consumerParked = false;
+            }
+        } finally {
+            if (shutdown) {
+                consumerActive.set(false);
+            }
+        }
+    }
+
+    /**
+     * 停止消费线程并丢弃所有未处理的行
+     */
+    public void shutdown() {
+        shutdown = true;
+        Thread thread = consumerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+        while (poll() != null) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 当前队列深度
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    public String getStatsSummary() {
+        return "enqueued=" + enqueued.get() + ", dropped=" + dropped.get()
+                + ", maxDepth=" + maxDepth.get() + "/" + capacity() + ", policy=" + policy;
+    }
+}
@@ -0,0 +1,215 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+/**
+ * {@link LogLineTokenizer} 的解析结果
+ * <p>
+ * 只记录原始行中各部分的偏移范围，不复制任何字符；只有调用 {@link #payload()} 等方法时才会生成字符串。
+ * 实例可以被同一个线程反复复用，非线程安全。
+ */
+public final class LogLine {
+
+    /**
+     * 日志行类型
+     */
+    public enum Kind {
+        /** ==>  Preparing: SQL语句 */
+        PREPARING,
+        /** ==> Parameters: 参数列表 */
+        PARAMETERS,
+        /** <==      Total: N / <==    Updates: N */
+        TOTAL,
+        /** Time: Nms / Executed in Nms */
+        TIME,
+        /** 其他日志 */
+        OTHER
+    }
+
+    private CharSequence source;
+    private Kind kind = Kind.OTHER;
+    private int payloadStart;
+    private int payloadEnd;
+    private int loggerStart = -1;
+    private int loggerEnd = -1;
+    private int threadStart = -1;
+    private int threadEnd = -1;
+    private int timestampStart = -1;
+    private int timestampEnd = -1;
+    private long number = -1;
+
+    void reset(CharSequence source) {
+        this.source = source;
+        this.kind = Kind.OTHER;
+        this.payloadStart = 0;
+        this.payloadEnd = 0;
+        this.loggerStart = -1;
+        this.loggerEnd = -1;
+        this.threadStart = -1;
+        this.threadEnd = -1;
+        this.timestampStart = -1;
+        this.timestampEnd = -1;
+        this.number = -1;
+    }
+
+    void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    void setPayload(int start, int end) {
+        this.payloadStart = start;
+        this.payloadEnd = end;
+    }
+
+    void setLogger(int start, int end) {
+        this.loggerStart = start;
+        this.loggerEnd = end;
+    }
+
+    void setThread(int start, int end) {
+        this.threadStart = start;
+        this.threadEnd = end;
+    }
+
+    void setTimestamp(int start, int end) {
+        this.timestampStart = start;
+        this.timestampEnd = end;
+    }
+
+    void setNumber(long number) {
+        this.number = number;
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getPayloadStart() {
+        return payloadStart;
+    }
+
+    public int getPayloadEnd() {
+        return payloadEnd;
+    }
+
+    public boolean hasPayload() {
+        return payloadEnd > payloadStart;
+    }
+
+    /**
+     * TOTAL 行的行数，或 TIME 行的毫秒数；没有时返回 -1
+     */
+    public long getNumber() {
+        return number;
+    }
+
+    public boolean hasLogger() {
+        return loggerStart >= 0;
+    }
+
+    public boolean hasThread() {
+        return threadStart >= 0;
+    }
+
+    /**
+     * SQL 或参数内容（已去除首尾空白）
+     */
+    public String payload() {
+        return text(payloadStart, payloadEnd);
+    }
+
+    /**
+     * 日志前缀中的 logger 名称，对 MyBatis 来说即 Mapper 语句 ID
+     */
+    public String loggerName() {
+        return text(loggerStart, loggerEnd);
+    }
+
+    /**
+     * 日志前缀中的线程名
+     */
+    public String threadName() {
+        return text(threadStart, threadEnd);
+    }
+
+    /**
+     * 日志前缀中的时间戳原文
+     */
+    public String timestamp() {
+        return text(timestampStart, timestampEnd);
+    }
+
+    /**
+     * 时间戳中带毫秒的时刻，换算为当天的毫秒数，如 12:00:00.123 或 12:00:00,123；
+     * 没有时间戳或时间戳不含毫秒时返回 -1，不创建子串
+     */
+    public int timeOfDayMillis() {
+        if (timestampStart < 0) {
+            return -1;
+        }
+        for (int i = timestampStart; i + 9 < timestampEnd; i++) {
+            if (source.charAt(i + 2) != ':' || source.charAt(i + 5) != ':'
+                    || (source.charAt(i + 8) != '.' && source.charAt(i + 8) != ',')) {
+                continue;
+            }
+            int hours = twoDigits(i);
+            int minutes = twoDigits(i + 3);
+            int seconds = twoDigits(i + 6);
+            if (hours < 0 || minutes < 0 || seconds < 0) {
+                continue;
+            }
+            // 只取前三位小数，不足三位的按毫秒补齐
+            int millis = 0;
+            int digits = 0;
+            for (int j = i + 9; j < timestampEnd && digits < 3 && SqlTemplate.isDigit(source.charAt(j)); j++, digits++) {
+                millis = millis * 10 + (source.charAt(j) - '0');
+            }
+            if (digits == 0) {
+                return -1;
+            }
+            for (; digits < 3; digits++) {
+                millis *= 10;
+            }
+            return ((hours * 60 + minutes) * 60 + seconds) * 1000 + millis;
+        }
+        return -1;
+    }
+
+    private int twoDigits(int start) {
+        char high = source.charAt(start);
+        char low = source.charAt(start + 1);
+        if (!SqlTemplate.isDigit(high) || !SqlTemplate.isDigit(low)) {
+            return -1;
+        }
+        return (high - '0') * 10 + (low - '0');
+    }
+
+    /**
+     * 不创建子串，判断内容是否以指定关键字开头（关键字须为小写ASCII）
+     */
+    public boolean payloadStartsWithIgnoreCase(String keyword) {
+        return payloadEnd - payloadStart >= keyword.length()
+                && SqlLinePrefilter.startsWithIgnoreCase(source, payloadStart, keyword);
+    }
+
+    private String text(int start, int end) {
+        if (start < 0 || end <= start) {
+            return null;
+        }
+        return source.subSequence(start, end).toString();
+    }
+
+    @Override
+    public String toString() {
+        return "LogLine{" +
+               "kind=" + kind +
+               ", logger='" + loggerName() + '\'' +
+               ", thread='" + threadName() + '\'' +
+               ", timestamp='" + timestamp() + '\'' +
+               ", payload='" + payload() + '\'' +
+               ", number=" + number +
+               '}';
+    }
+}
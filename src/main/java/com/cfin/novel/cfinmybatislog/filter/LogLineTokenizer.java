@@ -0,0 +1,246 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+/**
+ * MyBatis 日志行的单次扫描解析器
+ * <p>
+ * 一次从左到右遍历 {@link CharSequence}，识别行类型（Preparing / Parameters / Total / Time），
+ * 并记录时间戳、线程名、logger 名称（即 Mapper 语句 ID）以及内容的偏移范围，不创建任何子串。
+ * 支持以下常见格式：
+ * <pre>
+ * 2024-05-01 12:00:00.123 DEBUG 12345 --- [nio-8080-exec-1] c.e.mapper.UserMapper.selectById : ==>  Preparing: SELECT ...
+ * 12:00:00.123 [http-nio-8080-exec-1] DEBUG c.e.mapper.UserMapper.selectById - ==> Parameters: 1(Long)
+ * &lt;==      Total: 1
+ * </pre>
+ */
+public final class LogLineTokenizer {
+
+    private static final String[] MARKERS = {
+            "preparing:", "parameters:", "total:", "updates:", "time:", "executed in", "execute sql", "executing query"
+    };
+    private static final LogLine.Kind[] MARKER_KINDS = {
+            LogLine.Kind.PREPARING, LogLine.Kind.PARAMETERS, LogLine.Kind.TOTAL, LogLine.Kind.TOTAL,
+            LogLine.Kind.TIME, LogLine.Kind.TIME, LogLine.Kind.PREPARING, LogLine.Kind.PREPARING
+    };
+
+    // ASCII字符分类表：OTHER 以外均为名称字符
+    private static final byte OTHER = 0;
+    private static final byte DIGIT = 1;
+    private static final byte DOT = 2;
+    private static final byte LETTER = 3;
+    private static final byte MARKER_START = 4;
+    private static final byte[] CHAR_TYPES = new byte[128];
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) {
+            CHAR_TYPES[c] = LETTER;
+            CHAR_TYPES[c - 32] = LETTER;
+        }
+        for (String marker : MARKERS) {
+            char c = marker.charAt(0);
+            CHAR_TYPES[c] = MARKER_START;
+            CHAR_TYPES[c - 32] = MARKER_START;
+        }
+        for (char c = '0'; c <= '9'; c++) {
+            CHAR_TYPES[c] = DIGIT;
+        }
+        CHAR_TYPES['.'] = DOT;
+        CHAR_TYPES['_'] = LETTER;
+        CHAR_TYPES['$'] = LETTER;
+    }
+
+    private LogLineTokenizer() {
+    }
+
+    /**
+     * 解析一行日志，返回新的结果对象
+     */
+    public static LogLine tokenize(CharSequence line) {
+        return tokenize(line, new LogLine());
+    }
+
+    /**
+     * 解析一行日志，结果写入可复用的 {@code out}
+     */
+    public static LogLine tokenize(CharSequence line, LogLine out) {
+        out.reset(line);
+        int length = line.length();
+        int start = 0;
+        while (start < length && line.charAt(start) <= ' ') {
+            start++;
+        }
+        if (start == length) {
+            return out;
+        }
+
+        int pos = start;
+
+        // 1. 行首时间戳，如 2024-05-01 12:00:00.123 或 12:00:00,123
+        if (isDigit(line.charAt(start))) {
+            int end = start;
+            while (end < length) {
+                char c = line.charAt(end);
+                if (isDigit(c) || c == '-' || c == ':' || c == '.' || c == ',' || c == 'T' || c == '+' || c == '/') {
+                    end++;
+                } else if (c == ' ' && end + 1 < length && isDigit(line.charAt(end + 1))) {
+                    end++;
+                } else {
+                    break;
+                }
+            }
+            out.setTimestamp(start, end);
+            pos = end;
+        }
+
+        // 2. 扫描日志前缀，直到遇到第一个 MyBatis 标记；方括号、名称和分隔符各用一个内层循环跳过
+        int i = pos;
+        while (i < length) {
+            char c = line.charAt(i);
+            int type = c < 128 ? CHAR_TYPES[c] : OTHER;
+
+            if (type == OTHER) {
+                if (c == '[') {
+                    // 方括号内为线程名等信息，不参与 logger 识别；没有闭合时其后的内容都忽略
+                    int close = i + 1;
+                    while (close < length && line.charAt(close) != ']') {
+                        close++;
+                    }
+                    if (close == length) {
+                        break;
+                    }
+                    recordBracket(line, i + 1, close, out);
+                    i = close;
+                }
+                i++;
+                continue;
+            }
+
+            // 标记只可能出现在单词开头，其余位置无需尝试匹配
+            if (type == MARKER_START) {
+                int marker = matchMarker(line, i, length);
+                if (marker >= 0) {
+                    readPayload(line, i + MARKERS[marker].length(), length, MARKER_KINDS[marker], out);
+                    return out;
+                }
+            }
+            int tokenStart = i;
+            boolean tokenIsName = type != DIGIT && type != DOT;
+            boolean tokenHasDot = false;
+            while (i < length) {
+                c = line.charAt(i);
+                type = c < 128 ? CHAR_TYPES[c] : OTHER;
+                if (type == OTHER) {
+                    break;
+                }
+                if (type == DOT) {
+                    tokenHasDot = true;
+                }
+                i++;
+            }
+            // 名称结束：带点号的标识符视为 logger 候选，保留最后一个
+            if (i < length && tokenHasDot && tokenIsName) {
+                out.setLogger(tokenStart, trimDots(line, tokenStart, i));
+            }
+        }
+
+        // 3. 没有 MyBatis 标记时，识别直接输出的SQL语句
+        if (SqlLinePrefilter.startsWithIgnoreCase(line, start, "select")
+                || SqlLinePrefilter.startsWithIgnoreCase(line, start, "update")
+                || SqlLinePrefilter.startsWithIgnoreCase(line, start, "delete")) {
+            out.reset(line);
+            out.setKind(LogLine.Kind.PREPARING);
+            out.setPayload(start, trimEnd(line, start, length));
+        }
+        return out;
+    }
+
+    private static void readPayload(CharSequence line, int from, int length, LogLine.Kind kind, LogLine out) {
+        int start = from;
+        while (start < length && line.charAt(start) <= ' ') {
+            start++;
+        }
+        int end = trimEnd(line, start, length);
+
+        switch (kind) {
+            case TOTAL: {
+                long rows = parseNumber(line, start, end);
+                if (rows < 0) {
+                    return;
+                }
+                out.setNumber(rows);
+                break;
+            }
+            case TIME: {
+                long millis = parseNumber(line, start, end);
+                int unit = start;
+                while (unit < end && isDigit(line.charAt(unit))) {
+                    unit++;
+                }
+                while (unit < end && line.charAt(unit) == ' ') {
+                    unit++;
+                }
+                if (millis < 0 || !SqlLinePrefilter.startsWithIgnoreCase(line, unit, "ms")) {
+                    return;
+                }
+                out.setNumber(millis);
+                break;
+            }
+            default:
+                break;
+        }
+        out.setKind(kind);
+        out.setPayload(start, end);
+    }
+
+    private static int matchMarker(CharSequence line, int index, int length) {
+        char c = (char) (line.charAt(index) | 0x20);
+        for (int m = 0; m < MARKERS.length; m++) {
+            String marker = MARKERS[m];
+            if (marker.charAt(0) == c && index + marker.length() <= length
+                    && SqlLinePrefilter.startsWithIgnoreCase(line, index, marker)) {
+                return m;
+            }
+        }
+        return -1;
+    }
+
+    private static void recordBracket(CharSequence line, int start, int end, LogLine out) {
+        while (start < end && line.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && line.charAt(end - 1) == ' ') {
+            end--;
+        }
+        // [mybatis] 之类的标签不是线程名
+        if (end > start && !(end - start == 7 && SqlLinePrefilter.startsWithIgnoreCase(line, start, "mybatis"))) {
+            out.setThread(start, end);
+        }
+    }
+
+    private static long parseNumber(CharSequence line, int start, int end) {
+        long value = 0;
+        int i = start;
+        while (i < end && isDigit(line.charAt(i))) {
+            value = value * 10 + (line.charAt(i) - '0');
+            i++;
+        }
+        return i == start ? -1 : value;
+    }
+
+    private static int trimEnd(CharSequence line, int start, int end) {
+        while (end > start && line.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static int trimDots(CharSequence line, int start, int end) {
+        while (end > start && line.charAt(end - 1) == '.') {
+            end--;
+        }
+        return end;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,166 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import com.cfin.novel.cfinmybatislog.manager.NPlusOneFindings;
+import com.cfin.novel.cfinmybatislog.manager.SqlStatementRecord;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * 流式 N+1 查询检测：按线程观察最近的若干条语句，同一归一化模板反复执行超过阈值时报告
+ * <p>
+ * 每个线程只保存最近 {@link #WINDOW} 条语句中出现过的模板（最多 {@link #WINDOW} 个槽位），内存固定。
+ * 同一模板两次执行的位置相差小于 {@link #WINDOW} 即视为同一轮重复，因此循环中夹杂少量其他查询也能识别。
+ * 一轮重复结束（模板移出窗口、父查询的模板再次执行、线程空闲超过 {@code requestGapNanos} 或线程状态被淘汰）时，
+ * 次数超过阈值的才报告，报告中包含次数和第一次执行之前的那条语句（父查询）。
+ * 日志中看不到请求边界，同一线程空闲超过 {@code requestGapNanos} 后的语句视为新的请求；
+ * 线程池中的线程连续处理请求时没有空闲，父查询再次执行即视为进入下一轮，避免各请求的重复累计成一次。
+ * <p>
+ * 所有方法只能在摄取管道的消费线程中调用，报告的结果由 {@link NPlusOneFindings} 保存。
+ */
+final class NPlusOneDetector {
+    // 每个线程观察的语句数量，也是每个线程的槽位数
+    static final int WINDOW = 16;
+    // 最多跟踪的线程数量，超出时淘汰最久没有执行SQL的线程
+    private static final int MAX_THREADS = 256;
+    private static final String NO_THREAD = "";
+
+    interface Reporter {
+        void report(NPlusOneFindings.Finding finding);
+    }
+
+    /**
+     * 一个线程最近的语句窗口，每个槽位是窗口中出现过的一个模板
+     */
+    private static final class ThreadWindow {
+        final String threadName;
+        final long[] hashes = new long[WINDOW];
+        final int[] counts = new int[WINDOW];
+        // 该模板最近一次执行是该线程的第几条语句
+        final long[] lastPositions = new long[WINDOW];
+        final SqlStatementRecord[] parents = new SqlStatementRecord[WINDOW];
+        final SqlStatementRecord[] firsts = new SqlStatementRecord[WINDOW];
+        long position;
+        long lastNanos;
+        SqlStatementRecord previous;
+
+        ThreadWindow(String threadName) {
+            this.threadName = threadName;
+        }
+    }
+
+    private final Reporter reporter;
+    private final int threshold;
+    private final long requestGapNanos;
+    // 线程名 -> 窗口，按访问顺序排列，最久没有执行SQL的在最前
+    private final LinkedHashMap<String, ThreadWindow> windows = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param threshold       同一模板在一轮中执行次数超过该值才报告
+     * @param requestGapNanos 同一线程两条语句相隔超过该时间视为不同请求
+     */
+    NPlusOneDetector(Reporter reporter, int threshold, long requestGapNanos) {
+        this.reporter = reporter;
+        this.threshold = Math.max(1, threshold);
+        this.requestGapNanos = requestGapNanos;
+    }
+
+    /**
+     * 观察一条已发布的语句
+     */
+    void onStatement(SqlStatementRecord record, long nowNanos) {
+        String threadName = record.getThreadName() != null ? record.getThreadName() : NO_THREAD;
+        ThreadWindow window = windows.get(threadName);
+        if (window == null) {
+            window = new ThreadWindow(threadName);
+            windows.put(threadName, window);
+            if (windows.size() > MAX_THREADS) {
+                Iterator<ThreadWindow> eldest = windows.values().iterator();
+                finishAll(eldest.next());
+                eldest.remove();
+            }
+        } else if (nowNanos - window.lastNanos > requestGapNanos) {
+            finishAll(window);
+            window.previous = null;
+        }
+
+        long position = ++window.position;
+        long hash = record.getTemplate().getFingerprintHash();
+        int free = -1;
+        int match = -1;
+        for (int i = 0; i < WINDOW; i++) {
+            if (window.counts[i] == 0) {
+                free = free < 0 ? i : free;
+            } else if (position - window.lastPositions[i] >= WINDOW) {
+                // 一个窗口内没有再执行，这一轮重复结束
+                finish(window, i);
+                free = free < 0 ? i : free;
+            } else if (window.hashes[i] == hash) {
+                match = i;
+            } else if (window.parents[i] != null && window.parents[i].getTemplate().getFingerprintHash() == hash) {
+                // 父查询再次执行，这一轮重复结束，之后的执行属于新的一轮
+                finish(window, i);
+                free = free < 0 ? i : free;
+            }
+        }
+
+        if (match >= 0) {
+            window.counts[match]++;
+            window.lastPositions[match] = position;
+        } else {
+            // 仍在窗口内的模板最多 WINDOW - 1 个，总有空槽位
+            window.hashes[free] = hash;
+            window.counts[free] = 1;
+            window.lastPositions[free] = position;
+            window.parents[free] = window.previous;
+            window.firsts[free] = record;
+        }
+        window.previous = record;
+        window.lastNanos = nowNanos;
+    }
+
+    /**
+     * 结束空闲超过 {@code requestGapNanos} 的线程上的重复，并丢弃这些线程的状态
+     */
+    void expire(long nowNanos) {
+        Iterator<ThreadWindow> it = windows.values().iterator();
+        while (it.hasNext()) {
+            ThreadWindow window = it.next();
+            // 按访问顺序排列，遇到未超时的线程即可停止
+            if (nowNanos - window.lastNanos <= requestGapNanos) {
+                break;
+            }
+            finishAll(window);
+            it.remove();
+        }
+    }
+
+    /**
+     * 距下一次需要检查空闲线程的纳秒数，没有跟踪的线程时返回0
+     */
+    long nanosUntilNextExpiry(long nowNanos) {
+        if (windows.isEmpty()) {
+            return 0;
+        }
+        ThreadWindow eldest = windows.values().iterator().next();
+        return Math.max(1, eldest.lastNanos + requestGapNanos - nowNanos + 1);
+    }
+
+    private void finishAll(ThreadWindow window) {
+        for (int i = 0; i < WINDOW; i++) {
+            if (window.counts[i] > 0) {
+                finish(window, i);
+            }
+        }
+    }
+
+    private void finish(ThreadWindow window, int slot) {
+        int count = window.counts[slot];
+        if (count > threshold) {
+            reporter.report(new NPlusOneFindings.Finding(window.threadName, window.parents[slot], window.firsts[slot], count));
+        }
+        window.counts[slot] = 0;
+        window.parents[slot] = null;
+        window.firsts[slot] = null;
+    }
+}
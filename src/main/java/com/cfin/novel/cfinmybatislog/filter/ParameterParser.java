@@ -0,0 +1,186 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MyBatis "Parameters:" 内容的单次扫描解析器
+ * <p>
+ * 按 {@code value(Type), value(Type), null} 语法逐字符扫描：只有紧跟在逗号或行尾之前的 {@code (标识符)} 才被当作类型，
+ * 因此字符串值中的逗号、括号以及 {@code ", ("} 都不会把参数截断。不使用正则，也不产生中间 List。
+ * 同时兼容以下两种格式：
+ * <pre>
+ * [1: value(Type), 2: value(Type)]   带序号的批量参数
+ * 1, 'abc', null                     不带类型的简单参数（按逗号分隔，忽略单引号内的逗号）
+ * </pre>
+ */
+public final class ParameterParser {
+
+    // 常见类型名称，直接复用常量避免创建字符串
+    private static final String[] COMMON_TYPES = {
+            "String", "Integer", "Long", "Short", "Byte", "Double", "Float", "Boolean", "Character",
+            "BigDecimal", "BigInteger", "Timestamp", "Date", "Time", "LocalDate", "LocalDateTime", "LocalTime",
+            "OffsetDateTime", "ZonedDateTime", "Instant", "UUID", "byte[]"
+    };
+    // 其他类型名称的驻留缓存，类型种类有限，不会无限增长
+    private static final ConcurrentHashMap<String, String> TYPE_CACHE = new ConcurrentHashMap<>();
+
+    private ParameterParser() {
+    }
+
+    public static SqlParameters parse(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        boolean indexed = end - start >= 2 && text.charAt(start) == '[' && text.charAt(end - 1) == ']';
+        if (indexed) {
+            start++;
+            end--;
+        }
+
+        // 按平均每个参数约16个字符预估容量，不足时再扩容
+        SqlParameters result = new SqlParameters(text, indexed, (end - start) / 16 + 1);
+        int pos = start;
+        while (pos < end) {
+            pos = skipSpaces(text, pos, end);
+            if (indexed) {
+                pos = skipIndex(text, pos, end);
+            }
+            if (pos >= end) {
+                break;
+            }
+
+            // 不带类型的 null
+            if (SqlLinePrefilter.startsWithIgnoreCase(text, pos, "null") && isValueEnd(text, pos + 4, end)) {
+                result.add(pos, pos + 4, null);
+                pos += 5;
+                continue;
+            }
+
+            int next = parseTyped(text, pos, end, result);
+            if (next < 0) {
+                // 从这里到结尾都没有 (Type) 结尾，剩余部分按简单参数处理
+                parseUntyped(text, pos, end, result);
+                break;
+            }
+            pos = next;
+        }
+        return result;
+    }
+
+    /**
+     * 从 {@code pos} 开始找到第一个后面紧跟逗号或行尾的 (类型)
+     * @return 下一个参数的起始位置，找不到时返回-1
+     */
+    private static int parseTyped(CharSequence text, int pos, int end, SqlParameters result) {
+        // 状态：typeStart >= 0 表示处于 '(' 之后、且到目前为止都是合法类型名字符
+        int typeStart = -1;
+        for (int i = pos; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '(') {
+                typeStart = i + 1;
+            } else if (typeStart >= 0) {
+                if (c == ')') {
+                    if (i > typeStart && isValueEnd(text, i + 1, end)) {
+                        int valueEnd = trimEnd(text, pos, typeStart - 1, result.isIndexed());
+                        result.add(pos, valueEnd, internType(text, typeStart, i));
+                        return i + 2;
+                    }
+                    typeStart = -1;
+                } else if (!isTypeChar(c, i == typeStart)) {
+                    typeStart = -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static void parseUntyped(CharSequence text, int pos, int end, SqlParameters result) {
+        boolean inQuote = false;
+        int valueStart = pos;
+        for (int i = pos; i <= end; i++) {
+            char c = i < end ? text.charAt(i) : ',';
+            if (c == '\'') {
+                inQuote = !inQuote;
+            } else if (c == ',' && (!inQuote || i == end)) {
+                int s = skipSpaces(text, valueStart, i);
+                int e = trimEnd(text, s, i, true);
+                if (e > s) {
+                    result.add(s, e, null);
+                }
+                valueStart = i + 1;
+            }
+        }
+    }
+
+    /**
+     * 参数值是否在 {@code index} 处结束（行尾或逗号）
+     */
+    private static boolean isValueEnd(CharSequence text, int index, int end) {
+        return index == end || (index < end && text.charAt(index) == ',');
+    }
+
+    private static boolean isTypeChar(char c, boolean first) {
+        if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$') {
+            return true;
+        }
+        // 类型名不能以数字或符号开头，如 "(1)" 不是类型
+        return !first && ((c >= '0' && c <= '9') || c == '.' || c == '[' || c == ']');
+    }
+
+    private static int skipSpaces(CharSequence text, int pos, int end) {
+        while (pos < end && text.charAt(pos) == ' ') {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * 跳过带序号格式中的 "1: " 前缀
+     */
+    private static int skipIndex(CharSequence text, int pos, int end) {
+        int i = pos;
+        while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        if (i > pos && i < end && text.charAt(i) == ':') {
+            return skipSpaces(text, i + 1, end);
+        }
+        return pos;
+    }
+
+    private static int trimEnd(CharSequence text, int start, int end, boolean trim) {
+        if (trim) {
+            while (end > start && text.charAt(end - 1) == ' ') {
+                end--;
+            }
+        }
+        return end;
+    }
+
+    private static String internType(CharSequence text, int start, int end) {
+        int length = end - start;
+        for (String type : COMMON_TYPES) {
+            if (type.length() == length && regionEquals(text, start, type)) {
+                return type;
+            }
+        }
+        String type = text.subSequence(start, end).toString();
+        String cached = TYPE_CACHE.putIfAbsent(type, type);
+        return cached != null ? cached : type;
+    }
+
+    private static boolean regionEquals(CharSequence text, int start, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (text.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
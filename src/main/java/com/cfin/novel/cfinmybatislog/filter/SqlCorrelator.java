@@ -0,0 +1,291 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import com.cfin.novel.cfinmybatislog.utils.TimingWheel;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SQL执行关联器：把同一次执行的 Preparing / Parameters / Total / Time 行关联到一起
+ * <p>
+ * MyBatis 在同一个线程中、以同一个 Mapper 语句ID 作为 logger 输出这几行，因此以 (线程名, 语句ID) 作为键，
+ * 通过哈希表 O(1) 找到对应的执行记录，多线程并发执行时参数不会再配到别的SQL上。
+ * 只有日志前缀中既没有线程名也没有 logger 名称时（如 StdOutImpl）才退回到按先后顺序（FIFO）配对。
+ * <p>
+ * 每条执行都挂在一个 {@link TimingWheel} 上：配好参数后超过 {@code completeAfterNanos} 未收到 Total 行视为执行结束；
+ * 超过 {@code orphanAfterNanos} 仍没有参数的按孤立SQL发布，而不是直接丢弃。
+ * <p>
+ * 计时拦截器通常包在 {@code Executor.query} 外面，Time 行在 Total 行之后输出。收到过 Time 行之后，
+ * 收到 Total 的执行在时间轮上再等待 {@code timeGraceNanos}，等到同一线程的 Time 行或超时后才发布；
+ * 同一线程开始下一条SQL时也立即发布。没有 Time 行时，耗时由 Preparing 和 Total 行时间戳中的毫秒推算。
+ * <p>
+ * 除统计方法外，所有方法只能在摄取管道的消费线程中调用。
+ */
+final class SqlCorrelator {
+
+    // 时间轮刻度和每层槽位数：50ms x 64 x 64，约可覆盖 200 秒
+    private static final long WHEEL_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final int WHEEL_SLOTS = 64;
+    private static final int WHEEL_LEVELS = 2;
+
+    /**
+     * 执行完成（收到 Total / Updates 行或超时）后的回调，孤立SQL的 {@link SqlExecution#params} 为 null
+     */
+    interface Publisher {
+        void publish(SqlExecution execution);
+    }
+
+    private final Publisher publisher;
+    private final long completeAfterNanos;
+    private final long orphanAfterNanos;
+    private final long timeGraceNanos;
+    private final TimingWheel<SqlExecution> timeouts;
+    // (线程名, 语句ID) -> 该键上尚未完成的执行，按创建顺序排列
+    private final ConcurrentHashMap<String, ArrayDeque<SqlExecution>> pendingByKey = new ConcurrentHashMap<>();
+    // 线程名 -> 该线程最近一次执行，用于关联只带线程名的 Time 行
+    private final ConcurrentHashMap<String, SqlExecution> lastByThread = new ConcurrentHashMap<>();
+    // 没有键的执行，按先后顺序配对
+    private final ArrayDeque<SqlExecution> unkeyed = new ArrayDeque<>();
+    private SqlExecution lastCreated;
+    // 收到过 Time 行后 Total 之后才等待 Time 行，从不输出 Time 行时不推迟发布
+    private boolean timeLinesSeen;
+
+    // 统计计数器
+    private final AtomicLong keyedMatches = new AtomicLong();
+    private final AtomicLong fallbackMatches = new AtomicLong();
+    private final AtomicLong unmatchedParameters = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong orphanCount = new AtomicLong();
+
+    SqlCorrelator(Publisher publisher, long completeAfterNanos, long orphanAfterNanos, long timeGraceNanos) {
+        this.publisher = publisher;
+        this.completeAfterNanos = completeAfterNanos;
+        this.orphanAfterNanos = orphanAfterNanos;
+        this.timeGraceNanos = timeGraceNanos;
+        this.timeouts = new TimingWheel<>(WHEEL_TICK_NANOS, WHEEL_SLOTS, WHEEL_LEVELS, System.nanoTime());
+    }
+
+    void onPreparing(LogLine line, String sql, long nowNanos) {
+        String threadName = line.threadName();
+        String mapperId = line.loggerName();
+        String key = keyOf(threadName, mapperId);
+        SqlExecution execution = new SqlExecution(key, threadName, mapperId, sql, nowNanos);
+        execution.startTimeOfDay = line.timeOfDayMillis();
+
+        // 同一线程开始了下一条SQL，上一条执行的 Time 行不会再来
+        SqlExecution previous = threadName != null ? lastByThread.get(threadName) : lastCreated;
+        if (previous != null && previous.completed) {
+            publish(previous);
+        }
+
+        ArrayDeque<SqlExecution> pending = key != null
+                ? pendingByKey.computeIfAbsent(key, k -> new ArrayDeque<>())
+                : unkeyed;
+        // 同一线程同一语句再次开始执行，说明之前已配好参数的执行已经结束（只是没有输出 Total 行）
+        publishPaired(pending);
+        pending.addLast(execution);
+        execution.timer = timeouts.schedule(execution, nowNanos + orphanAfterNanos);
+
+        if (threadName != null) {
+            lastByThread.put(threadName, execution);
+        }
+        lastCreated = execution;
+    }
+
+    /**
+     * @return 配对成功的执行，没有对应的SQL时返回null（例如被跳过的INSERT语句的参数）
+     */
+    SqlExecution onParameters(LogLine line, String params, long nowNanos) {
+        String key = keyOf(line.threadName(), line.loggerName());
+        SqlExecution execution = null;
+
+        if (key != null) {
+            // 参数紧跟在同一线程同一语句的 Preparing 之后，取该键上最新一条未配参数的记录
+            ArrayDeque<SqlExecution> pending = pendingByKey.get(key);
+            if (pending != null) {
+                Iterator<SqlExecution> it = pending.descendingIterator();
+                while (it.hasNext()) {
+                    SqlExecution candidate = it.next();
+                    if (!candidate.hasParams()) {
+                        execution = candidate;
+                        break;
+                    }
+                }
+            }
+            if (execution != null) {
+                keyedMatches.incrementAndGet();
+            }
+        } else {
+            // 没有键时按先后顺序配对
+            for (SqlExecution candidate : unkeyed) {
+                if (!candidate.hasParams()) {
+                    execution = candidate;
+                    break;
+                }
+            }
+            if (execution != null) {
+                fallbackMatches.incrementAndGet();
+            }
+        }
+
+        if (execution == null) {
+            unmatchedParameters.incrementAndGet();
+            return null;
+        }
+        execution.params = params;
+        execution.pairedNanos = nowNanos;
+        timeouts.reschedule(execution.timer, nowNanos + completeAfterNanos);
+        return execution;
+    }
+
+    void onTotal(LogLine line, long nowNanos) {
+        String key = keyOf(line.threadName(), line.loggerName());
+        ArrayDeque<SqlExecution> pending = key != null ? pendingByKey.get(key) : unkeyed;
+        if (pending == null) {
+            return;
+        }
+
+        // 有键时取最新一条已配参数的执行，无键时取最早的一条
+        Iterator<SqlExecution> it = key != null ? pending.descendingIterator() : pending.iterator();
+        while (it.hasNext()) {
+            SqlExecution execution = it.next();
+            if (execution.hasParams()) {
+                it.remove();
+                if (key != null && pending.isEmpty()) {
+                    pendingByKey.remove(key, pending);
+                }
+                execution.rows = line.getNumber();
+                execution.elapsedMillis = elapsedMillis(execution.startTimeOfDay, line.timeOfDayMillis());
+                if (execution.timeMillis >= 0 || !timeLinesSeen) {
+                    publish(execution);
+                } else {
+                    execution.completed = true;
+                    timeouts.reschedule(execution.timer, nowNanos + timeGraceNanos);
+                }
+                return;
+            }
+        }
+    }
+
+    void onTime(LogLine line) {
+        timeLinesSeen = true;
+        // Time 行通常由其他拦截器输出，logger 不是语句ID，只能按线程关联
+        String threadName = line.threadName();
+        SqlExecution execution = threadName != null ? lastByThread.get(threadName) : lastCreated;
+        if (execution != null && execution.timeMillis < 0) {
+            execution.timeMillis = line.getNumber();
+            if (execution.completed) {
+                publish(execution);
+            }
+        }
+    }
+
+    /**
+     * 推进时间轮，发布所有超时的执行
+     * @return 本次超时的执行数量
+     */
+    int expire(long nowNanos) {
+        return timeouts.advance(nowNanos, this::onExpired);
+    }
+
+    /**
+     * 距下一次需要检查超时的纳秒数，没有未完成的执行时返回0
+     */
+    long nanosUntilNextExpiry(long nowNanos) {
+        return timeouts.nanosUntilNextTick(nowNanos);
+    }
+
+    private void onExpired(SqlExecution execution) {
+        if (execution.completed) {
+            // 已收到 Total，只是没有等到 Time 行，按正常结束发布
+            publish(execution);
+            return;
+        }
+        ArrayDeque<SqlExecution> pending = execution.key != null ? pendingByKey.get(execution.key) : unkeyed;
+        if (pending != null) {
+            pending.remove(execution);
+            if (execution.key != null && pending.isEmpty()) {
+                pendingByKey.remove(execution.key, pending);
+            }
+        }
+        expiredCount.incrementAndGet();
+        if (!execution.hasParams()) {
+            orphanCount.incrementAndGet();
+        }
+        publish(execution);
+    }
+
+    private void publishPaired(ArrayDeque<SqlExecution> pending) {
+        Iterator<SqlExecution> it = pending.iterator();
+        while (it.hasNext()) {
+            SqlExecution execution = it.next();
+            if (execution.hasParams()) {
+                it.remove();
+                publish(execution);
+            }
+        }
+    }
+
+    private void publish(SqlExecution execution) {
+        timeouts.cancel(execution.timer);
+        forget(execution);
+        publisher.publish(execution);
+    }
+
+    private void forget(SqlExecution execution) {
+        if (execution.threadName != null) {
+            lastByThread.remove(execution.threadName, execution);
+        }
+        if (lastCreated == execution) {
+            lastCreated = null;
+        }
+    }
+
+    /**
+     * 两个当天毫秒数之差，跨过午夜时加一天；任一时间戳不含毫秒时返回-1
+     */
+    static long elapsedMillis(int startTimeOfDay, int endTimeOfDay) {
+        if (startTimeOfDay < 0 || endTimeOfDay < 0) {
+            return -1;
+        }
+        int elapsed = endTimeOfDay - startTimeOfDay;
+        return elapsed >= 0 ? elapsed : elapsed + TimeUnit.DAYS.toMillis(1);
+    }
+
+    private static String keyOf(String threadName, String mapperId) {
+        if (threadName == null && mapperId == null) {
+            return null;
+        }
+        return (threadName != null ? threadName : "") + '|' + (mapperId != null ? mapperId : "");
+    }
+
+    /**
+     * 当前尚未发布的执行数量，包括等待 Time 行的执行
+     */
+    int pendingCount() {
+        return timeouts.size();
+    }
+
+    /**
+     * 因超时而发布的执行数量（包括孤立SQL）
+     */
+    long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * 超时仍没有参数、按孤立SQL发布的数量
+     */
+    long getOrphanCount() {
+        return orphanCount.get();
+    }
+
+    String getStatsSummary() {
+        return "keyedMatches=" + keyedMatches.get() + ", fallbackMatches=" + fallbackMatches.get()
+                + ", unmatchedParameters=" + unmatchedParameters.get()
+                + ", expired=" + expiredCount.get() + ", orphans=" + orphanCount.get();
+    }
+}
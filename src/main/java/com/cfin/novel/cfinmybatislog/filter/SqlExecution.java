@@ -0,0 +1,63 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import com.cfin.novel.cfinmybatislog.utils.TimingWheel;
+
+/**
+ * 一次正在关联中的SQL执行：由 Preparing 行创建，依次补充参数、耗时和结果行数
+ * <p>
+ * 只在摄取管道的消费线程中读写。
+ */
+final class SqlExecution {
+    final String key;
+    final String threadName;
+    final String mapperId;
+    final String sql;
+    final long createdNanos;
+    // 开始执行的时间（epoch 毫秒）
+    final long startMillis;
+
+    String params;
+    long pairedNanos;
+    // Time 行报告的耗时
+    long timeMillis = -1;
+    // 由 Preparing 和 Total 行日志前缀中的时间戳推算的耗时，没有 Time 行时使用
+    long elapsedMillis = -1;
+    // Preparing 行时间戳对应的当天毫秒数，时间戳不含毫秒时为-1
+    int startTimeOfDay = -1;
+    long rows = -1;
+    // 已收到 Total 行，正在等待随后的 Time 行
+    boolean completed;
+    // 超时定时器：没有参数时按孤立SQL超时，配好参数后按执行结束超时
+    TimingWheel.Timer<SqlExecution> timer;
+
+    SqlExecution(String key, String threadName, String mapperId, String sql, long createdNanos) {
+        this.key = key;
+        this.threadName = threadName;
+        this.mapperId = mapperId;
+        this.sql = sql;
+        this.createdNanos = createdNanos;
+        this.startMillis = System.currentTimeMillis();
+    }
+
+    boolean hasParams() {
+        return params != null;
+    }
+
+    /**
+     * 执行耗时：优先使用 Time 行的值，其次是由时间戳推算的值，都没有时为-1
+     */
+    long latencyMillis() {
+        return timeMillis >= 0 ? timeMillis : elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SqlExecution{" +
+               "key='" + key + '\'' +
+               ", sql='" + sql.substring(0, Math.min(30, sql.length())) + "..." + '\'' +
+               ", params='" + params + '\'' +
+               ", time=" + timeMillis +
+               ", rows=" + rows +
+               '}';
+    }
+}
@@ -0,0 +1,326 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * SQL排版：子句换行、按子查询层级缩进、折叠过长的 IN 列表
+ * <p>
+ * 排版结果只记录每个词法片段之前的分隔方式（无、空格或换行加缩进）和被折叠的片段，
+ * 根据模板的 {@link SqlTokens} 生成一次，随 {@link SqlTemplate} 缓存；每次执行显示时按排版复制片段，
+ * 在占位符处填入参数值，不再重新分析。
+ * <p>
+ * 只有查询层（顶层和子查询）中的子句关键字换行，函数调用、IN 列表等括号内的内容保持在一行；
+ * 逗号分隔的列表超过行宽时在逗号之后换行。原SQL中片段之间的空白合并为一个空格，没有空白的保持紧邻。
+ */
+public final class SqlLayout {
+
+    // 片段之前的分隔方式；大于等于 LINE 时为换行，缩进层数为 (值 - LINE)
+    private static final short HIDDEN = -1;
+    private static final short NONE = 0;
+    private static final short SPACE = 1;
+    private static final short LINE = 2;
+
+    private static final String INDENT = "    ";
+    // 行宽超过该值时在下一个逗号之后换行；按模板文本估算，不计参数值的长度
+    private static final int MAX_LINE_WIDTH = 120;
+    // IN 列表超过该项数时折叠，只显示前几项
+    private static final int IN_LIST_LIMIT = 10;
+    private static final int IN_LIST_SHOWN = 5;
+
+    // 另起一行的子句关键字
+    private static final Set<String> CLAUSES = new HashSet<>(Arrays.asList(
+            "select", "from", "where", "group", "order", "having", "limit", "offset", "fetch",
+            "union", "except", "intersect", "values", "set", "returning", "for",
+            "insert", "update", "delete", "replace",
+            "join", "left", "right", "inner", "full", "cross", "natural"
+    ));
+    // 前一个关键字是这些时子句关键字不换行，如 LEFT OUTER JOIN、DELETE FROM、FOR UPDATE、ON DUPLICATE KEY UPDATE
+    private static final Set<String> CONTINUATIONS = new HashSet<>(Arrays.asList(
+            "left", "right", "inner", "outer", "full", "cross", "natural", "delete", "for", "key", "do"
+    ));
+
+    private final short[] breaks;
+    // 被折叠的列表项数，记在折叠部分之后的第一个片段上；没有折叠时为null
+    private final int[] collapsed;
+
+    private SqlLayout(short[] breaks, int[] collapsed) {
+        this.breaks = breaks;
+        this.collapsed = collapsed;
+    }
+
+    static SqlLayout build(String sql, SqlTokens tokens) {
+        int count = tokens.size();
+        short[] breaks = new short[count];
+        int[] collapsed = null;
+        // 括号栈，每层保存进入括号前的 base、query、clauseIndent
+        int[] stack = new int[24];
+        int depth = 0;
+        // base: 当前查询层子句关键字的缩进层数；query: 当前括号层是否为查询层（顶层或子查询）
+        int base = 0;
+        boolean query = true;
+        // 当前子句所在行的缩进层数，折行比它多缩进一层
+        int clauseIndent = 0;
+        int column = 0;
+        boolean between = false;
+        boolean wrap = false;
+        boolean lineComment = false;
+        // 上一个片段为关键字时的小写文本，否则为null
+        String previousWord = null;
+
+        for (int i = 0; i < count; i++) {
+            if (breaks[i] == HIDDEN) {
+                continue;
+            }
+            int start = tokens.start(i);
+            int end = tokens.end(i);
+            SqlTokens.Kind kind = tokens.kind(i);
+            String word = kind == SqlTokens.Kind.KEYWORD ? sql.substring(start, end).toLowerCase() : null;
+            // 换行时的缩进层数，不换行为-1
+            int line = -1;
+            if (lineComment) {
+                // 行注释之后必须换行，否则后面的片段会成为注释的一部分
+                line = clauseIndent;
+            } else if (wrap) {
+                line = clauseIndent + 1;
+            }
+
+            if (word != null) {
+                if (query && (CLAUSES.contains(word) && !CONTINUATIONS.contains(previousWord)
+                        && !isFunctionCall(sql, tokens, i) || isUpsert(sql, tokens, i, word))) {
+                    line = base;
+                    clauseIndent = base;
+                } else if (word.equals("and") && between) {
+                    between = false;
+                } else if (query && (word.equals("and") || word.equals("or"))) {
+                    line = base + 1;
+                    clauseIndent = base + 1;
+                } else if (word.equals("between")) {
+                    between = true;
+                }
+            } else if (kind == SqlTokens.Kind.PUNCTUATION && sql.charAt(start) == '(') {
+                if (depth + 3 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length << 1);
+                }
+                stack[depth++] = base;
+                stack[depth++] = query ? 1 : 0;
+                stack[depth++] = clauseIndent;
+                if (isSubquery(sql, tokens, i)) {
+                    base = clauseIndent + 1;
+                } else {
+                    query = false;
+                    if ("in".equals(previousWord)) {
+                        collapsed = collapseList(sql, tokens, i, breaks, collapsed);
+                    }
+                }
+            } else if (kind == SqlTokens.Kind.PUNCTUATION && sql.charAt(start) == ')' && depth > 0) {
+                boolean subquery = query;
+                clauseIndent = stack[--depth];
+                query = stack[--depth] == 1;
+                base = stack[--depth];
+                if (subquery) {
+                    line = clauseIndent;
+                }
+            }
+
+            short separator;
+            if (i == 0) {
+                separator = NONE;
+            } else if (line >= 0) {
+                separator = (short) (LINE + line);
+                column = line * INDENT.length();
+            } else {
+                separator = start > tokens.end(i - 1) ? SPACE : NONE;
+                column += separator;
+            }
+            breaks[i] = separator;
+            column += end - start;
+            if (collapsed != null && collapsed[i] > 0) {
+                column += 16;
+            }
+            wrap = kind == SqlTokens.Kind.PUNCTUATION && sql.charAt(start) == ',' && column > MAX_LINE_WIDTH;
+            lineComment = kind == SqlTokens.Kind.COMMENT && sql.startsWith("--", start);
+            previousWord = word;
+        }
+        return new SqlLayout(breaks, collapsed);
+    }
+
+    /**
+     * 按排版复制片段；params 不为null时在占位符处填入参数值，参数比占位符多时多出的参数展开到单独的 IN (?) 中，
+     * 规则与 {@link SqlTemplate#appendTo} 相同
+     */
+    FormattedSql render(String sql, SqlTokens tokens, SqlParameters params, int placeholderCount, int inPlaceholder) {
+        int paramCount = params != null ? params.size() : 0;
+        int inValues = inPlaceholder >= 0 && paramCount > placeholderCount ? paramCount - placeholderCount + 1 : 1;
+        int sourceLength = params != null ? params.getSource().length() : 0;
+        StringBuilder text = new StringBuilder(sql.length() + sourceLength + tokens.size());
+        SqlTokens result = new SqlTokens(tokens.size() + 4);
+        int placeholder = 0;
+        int param = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            SqlTokens.Kind kind = tokens.kind(i);
+            if (breaks[i] == HIDDEN) {
+                // 折叠的占位符同样消耗参数
+                if (kind == SqlTokens.Kind.PLACEHOLDER) {
+                    param += placeholder++ == inPlaceholder ? inValues : 1;
+                }
+                continue;
+            }
+            if (collapsed != null && collapsed[i] > 0) {
+                appendCollapsed(text, result, collapsed[i]);
+            }
+            appendSeparator(text, breaks[i]);
+            if (kind == SqlTokens.Kind.PLACEHOLDER && param < paramCount) {
+                int values = Math.min(placeholder++ == inPlaceholder ? inValues : 1, paramCount - param);
+                int shown = values > IN_LIST_LIMIT ? IN_LIST_SHOWN : values;
+                for (int v = 0; v < shown; v++) {
+                    if (v > 0) {
+                        text.append(", ");
+                    }
+                    int start = text.length();
+                    SqlTemplate.appendValue(text, params, param + v);
+                    result.add(start, text.length(), valueKind(text, start));
+                }
+                if (shown < values) {
+                    appendCollapsed(text, result, values - shown);
+                }
+                param += values;
+                continue;
+            }
+            if (kind == SqlTokens.Kind.PLACEHOLDER) {
+                placeholder++;
+            }
+            int start = text.length();
+            text.append(sql, tokens.start(i), tokens.end(i));
+            result.add(start, text.length(), kind);
+        }
+        return new FormattedSql(text.toString(), result.trimToSize());
+    }
+
+    /**
+     * 左括号是否开始一个子查询
+     */
+    private static boolean isSubquery(String sql, SqlTokens tokens, int open) {
+        int next = open + 1;
+        if (next >= tokens.size() || tokens.kind(next) != SqlTokens.Kind.KEYWORD) {
+            return false;
+        }
+        int start = tokens.start(next);
+        int length = tokens.end(next) - start;
+        return length == 6 && sql.regionMatches(true, start, "select", 0, 6)
+                || length == 4 && sql.regionMatches(true, start, "with", 0, 4);
+    }
+
+    /**
+     * ON DUPLICATE KEY UPDATE、ON CONFLICT 中的 ON 另起一行，JOIN 条件中的 ON 不换行
+     */
+    private static boolean isUpsert(String sql, SqlTokens tokens, int index, String word) {
+        int next = index + 1;
+        if (!word.equals("on") || next >= tokens.size() || tokens.kind(next) != SqlTokens.Kind.KEYWORD) {
+            return false;
+        }
+        int start = tokens.start(next);
+        int length = tokens.end(next) - start;
+        return length == 9 && sql.regionMatches(true, start, "duplicate", 0, 9)
+                || length == 8 && sql.regionMatches(true, start, "conflict", 0, 8);
+    }
+
+    /**
+     * 紧跟左括号的关键字作为函数名，如 LEFT(name, 3)、VALUES(col)；
+     * 但前一个片段是表名、字段或右括号时仍是子句，如 INSERT INTO t(a, b) VALUES(?, ?)
+     */
+    private static boolean isFunctionCall(String sql, SqlTokens tokens, int index) {
+        int next = index + 1;
+        if (next >= tokens.size() || tokens.start(next) != tokens.end(index) || sql.charAt(tokens.start(next)) != '(') {
+            return false;
+        }
+        if (index == 0) {
+            return true;
+        }
+        int previous = index - 1;
+        switch (tokens.kind(previous)) {
+            case TABLE:
+            case FIELD:
+            case ALIAS:
+                return false;
+            case PUNCTUATION:
+                return sql.charAt(tokens.start(previous)) != ')';
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * IN 列表超过 IN_LIST_LIMIT 项时，把第 IN_LIST_SHOWN 项之后的片段标记为折叠，折叠的项数记在右括号上
+     */
+    private static int[] collapseList(String sql, SqlTokens tokens, int open, short[] breaks, int[] collapsed) {
+        int depth = 0;
+        int items = 1;
+        int hideFrom = -1;
+        for (int j = open + 1; j < tokens.size(); j++) {
+            if (tokens.kind(j) != SqlTokens.Kind.PUNCTUATION) {
+                continue;
+            }
+            char c = sql.charAt(tokens.start(j));
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                if (depth-- > 0) {
+                    continue;
+                }
+                if (items > IN_LIST_LIMIT) {
+                    for (int k = hideFrom; k < j; k++) {
+                        breaks[k] = HIDDEN;
+                    }
+                    if (collapsed == null) {
+                        collapsed = new int[tokens.size()];
+                    }
+                    collapsed[j] = items - IN_LIST_SHOWN;
+                }
+                return collapsed;
+            } else if (c == ',' && depth == 0) {
+                items++;
+                if (items == IN_LIST_SHOWN + 1) {
+                    hideFrom = j;
+                }
+            }
+        }
+        return collapsed;
+    }
+
+    private static void appendSeparator(StringBuilder text, short separator) {
+        if (separator == SPACE) {
+            text.append(' ');
+        } else if (separator >= LINE) {
+            text.append('\n');
+            for (int i = LINE; i < separator; i++) {
+                text.append(INDENT);
+            }
+        }
+    }
+
+    private static void appendCollapsed(StringBuilder text, SqlTokens result, int items) {
+        text.append(' ');
+        int start = text.length();
+        text.append("/* ... ").append(items).append(" more */");
+        result.add(start, text.length(), SqlTokens.Kind.COMMENT);
+    }
+
+    /**
+     * 填入的参数值按格式化结果区分：带引号的为字符串，数字开头的为数字，其余（NULL、true 等）按关键字显示
+     */
+    private static SqlTokens.Kind valueKind(CharSequence text, int start) {
+        if (start == text.length()) {
+            return SqlTokens.Kind.STRING;
+        }
+        char c = text.charAt(start);
+        if (c == '\'') {
+            return SqlTokens.Kind.STRING;
+        }
+        if (SqlTemplate.isDigit(c) || c == '-' || c == '.') {
+            return SqlTokens.Kind.NUMBER;
+        }
+        return SqlTokens.Kind.KEYWORD;
+    }
+}
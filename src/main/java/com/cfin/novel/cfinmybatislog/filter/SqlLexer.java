@@ -0,0 +1,191 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * SQL词法分析：一次扫描把SQL切分为关键字、标识符、常量、占位符、运算符和注释片段
+ * <p>
+ * 字符串常量、引号标识符和注释的边界与 {@link SqlTemplate} 的占位符扫描一致。
+ * 标识符按上下文区分：FROM / JOIN / UPDATE / INTO 之后（以及 FROM 表列表中逗号之后）为表名，
+ * 表名或 AS 之后为别名，紧跟左括号的为函数名，其余为字段名。
+ */
+public final class SqlLexer {
+
+    // 小写关键字；COUNT、SUM 等函数名不在其中，按是否紧跟括号识别
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "select", "insert", "update", "delete", "replace", "merge", "into", "from", "where", "and", "or", "not",
+            "join", "inner", "left", "right", "full", "outer", "cross", "natural", "on", "using",
+            "group", "order", "by", "having", "limit", "offset", "fetch", "first", "next", "rows", "only",
+            "as", "values", "value", "set", "in", "between", "like", "escape", "is", "null", "true", "false",
+            "exists", "distinct", "union", "all", "any", "some", "case", "when", "then", "else", "end",
+            "asc", "desc", "with", "recursive", "for", "share", "nowait", "duplicate", "key", "ignore",
+            "interval", "returning", "default", "conflict", "do", "nothing", "lock", "mode"
+    ));
+
+    private SqlLexer() {
+    }
+
+    public static SqlTokens tokenize(String sql) {
+        int length = sql.length();
+        SqlTokens tokens = new SqlTokens(length / 4);
+        // expectTable / inTableList 与 SqlTemplate.compile 相同；expectAlias: 下一个标识符是别名
+        boolean expectTable = false;
+        boolean inTableList = false;
+        boolean expectAlias = false;
+        // 上一个关键字是 KEY，用于识别 ON DUPLICATE KEY UPDATE，其后不是表名
+        boolean afterKey = false;
+
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c <= ' ') {
+                i++;
+                continue;
+            }
+            int start = i;
+            SqlTokens.Kind kind;
+            switch (c) {
+                case '\'':
+                    i = SqlTemplate.skipQuoted(sql, i, c);
+                    kind = SqlTokens.Kind.STRING;
+                    break;
+                case '"':
+                case '`':
+                    i = SqlTemplate.skipQuoted(sql, i, c);
+                    if (expectTable) {
+                        kind = SqlTokens.Kind.TABLE;
+                        expectTable = false;
+                        expectAlias = true;
+                    } else if (expectAlias) {
+                        kind = SqlTokens.Kind.ALIAS;
+                        expectAlias = false;
+                    } else {
+                        kind = SqlTokens.Kind.FIELD;
+                    }
+                    tokens.add(start, i, kind);
+                    continue;
+                case '?':
+                    i++;
+                    kind = SqlTokens.Kind.PLACEHOLDER;
+                    break;
+                case ',':
+                    i++;
+                    if (inTableList) {
+                        expectTable = true;
+                    }
+                    kind = SqlTokens.Kind.PUNCTUATION;
+                    break;
+                case '(':
+                case ')':
+                    i++;
+                    expectTable = false;
+                    inTableList = false;
+                    kind = SqlTokens.Kind.PUNCTUATION;
+                    break;
+                case ';':
+                case '.':
+                    i++;
+                    kind = SqlTokens.Kind.PUNCTUATION;
+                    break;
+                default:
+                    if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                        i = SqlTemplate.skipLineComment(sql, i);
+                        // 行注释不包含结尾的换行符，换行按空白处理
+                        tokens.add(start, sql.charAt(i - 1) == '\n' ? i - 1 : i, SqlTokens.Kind.COMMENT);
+                        continue;
+                    }
+                    if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                        i = SqlTemplate.skipBlockComment(sql, i);
+                        tokens.add(start, i, SqlTokens.Kind.COMMENT);
+                        continue;
+                    }
+                    if (SqlTemplate.isDigit(c)) {
+                        i = SqlTemplate.skipNumber(sql, i);
+                        kind = SqlTokens.Kind.NUMBER;
+                        break;
+                    }
+                    if (SqlTemplate.isWordChar(c)) {
+                        i = SqlTemplate.skipWord(sql, i);
+                        String word = sql.substring(start, i).toLowerCase();
+                        if (expectTable && !KEYWORDS.contains(word)) {
+                            kind = SqlTokens.Kind.TABLE;
+                            expectTable = false;
+                            expectAlias = true;
+                        } else if (KEYWORDS.contains(word)) {
+                            kind = SqlTokens.Kind.KEYWORD;
+                            expectAlias = word.equals("as");
+                            if (word.equals("from")) {
+                                expectTable = true;
+                                inTableList = true;
+                            } else if (word.equals("join") || word.equals("into") || (word.equals("update") && !afterKey)) {
+                                expectTable = true;
+                                inTableList = false;
+                            } else if (inTableList && SqlTemplate.isClauseKeyword(sql, start, i)) {
+                                inTableList = false;
+                            }
+                            afterKey = word.equals("key");
+                            tokens.add(start, i, kind);
+                            continue;
+                        } else if (expectAlias) {
+                            kind = SqlTokens.Kind.ALIAS;
+                            expectAlias = false;
+                        } else if (nextNonSpace(sql, i) == '(') {
+                            kind = SqlTokens.Kind.FUNCTION;
+                        } else {
+                            kind = SqlTokens.Kind.FIELD;
+                        }
+                        afterKey = false;
+                        tokens.add(start, i, kind);
+                        continue;
+                    }
+                    // 其余字符作为运算符，相邻的运算符字符合并，如 <=、<>、||
+                    i++;
+                    while (i < length && isOperatorChar(sql.charAt(i))
+                            && !(sql.charAt(i) == '-' && i + 1 < length && sql.charAt(i + 1) == '-')
+                            && !(sql.charAt(i) == '/' && i + 1 < length && sql.charAt(i + 1) == '*')) {
+                        i++;
+                    }
+                    kind = SqlTokens.Kind.OPERATOR;
+                    break;
+            }
+            tokens.add(start, i, kind);
+            expectAlias = false;
+            afterKey = false;
+        }
+        return tokens.trimToSize();
+    }
+
+    private static boolean isOperatorChar(char c) {
+        switch (c) {
+            case '=':
+            case '<':
+            case '>':
+            case '!':
+            case '+':
+            case '-':
+            case '*':
+            case '/':
+            case '%':
+            case '|':
+            case '&':
+            case '^':
+            case '~':
+            case ':':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static char nextNonSpace(String sql, int start) {
+        for (int i = start; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c > ' ') {
+                return c;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,186 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import java.util.Arrays;
+
+/**
+ * {@link ParameterParser} 的解析结果
+ * <p>
+ * 以并列数组保存每个参数值在原文中的偏移范围和类型名称，取值时才创建字符串。
+ * 类型名称已驻留（intern），可以直接用 {@code ==} 比较；没有类型信息的参数类型为 null。
+ */
+public final class SqlParameters {
+
+    private final CharSequence source;
+    private final boolean indexed;
+    private int count;
+    private int[] starts;
+    private int[] ends;
+    private String[] types;
+
+    SqlParameters(CharSequence source, boolean indexed, int capacity) {
+        this.source = source;
+        this.indexed = indexed;
+        int size = Math.max(4, capacity);
+        this.starts = new int[size];
+        this.ends = new int[size];
+        this.types = new String[size];
+    }
+
+    void add(int start, int end, String type) {
+        if (count == starts.length) {
+            int size = count << 1;
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            types = Arrays.copyOf(types, size);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        types[count] = type;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * 是否为 [1: value(Type), 2: value(Type)] 形式的带序号参数列表
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public String value(int index) {
+        return source.subSequence(starts[index], ends[index]).toString();
+    }
+
+    /**
+     * 参数类型，如 String、Long；没有类型信息时返回null
+     */
+    public String type(int index) {
+        return types[index];
+    }
+
+    /**
+     * 参数值是否为不带类型的 null
+     */
+    public boolean isNull(int index) {
+        return types[index] == null && ends[index] - starts[index] == 4
+                && SqlLinePrefilter.startsWithIgnoreCase(source, starts[index], "null");
+    }
+
+    /**
+     * 参数值是否为数字
+     */
+    public boolean isNumber(int index) {
+        return SqlTemplate.isNumber(source, starts[index], ends[index]);
+    }
+
+    /**
+     * 显示用的类型名称：有类型信息时为原类型，否则根据值推断
+     */
+    public String displayType(int index) {
+        return types[index] != null ? types[index] : inferType(source, starts[index], ends[index]);
+    }
+
+    public int getValueStart(int index) {
+        return starts[index];
+    }
+
+    public int getValueEnd(int index) {
+        return ends[index];
+    }
+
+    public CharSequence getSource() {
+        return source;
+    }
+
+    /**
+     * 全部参数值和类型的64位哈希（FNV-1a），直接在原文上计算，不创建字符串；值和类型都相同的参数列表哈希相同
+     */
+    public long hash64() {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < count; i++) {
+            for (int j = starts[i]; j < ends[i]; j++) {
+                hash ^= source.charAt(j);
+                hash *= 0x100000001b3L;
+            }
+            // 分隔相邻参数，避免 "ab","c" 与 "a","bc" 相同
+            hash ^= types[i] != null ? types[i].hashCode() : 0x1f;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * 释放数组中未使用的容量，用于需要长期保存的参数
+     */
+    public SqlParameters trimToSize() {
+        if (count < starts.length) {
+            starts = Arrays.copyOf(starts, count);
+            ends = Arrays.copyOf(ends, count);
+            types = Arrays.copyOf(types, count);
+        }
+        return this;
+    }
+
+    /**
+     * 格式化为 [1: value (Type), 2: value (Type)] 用于显示，没有类型信息的参数根据值推断类型
+     */
+    public String format() {
+        if (count == 0) return "[]";
+
+        StringBuilder formatted = new StringBuilder(source.length() + count * 8);
+        formatted.append("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                formatted.append(", ");
+            }
+            formatted.append(i + 1).append(": ").append(source, starts[i], ends[i])
+                     .append(" (").append(displayType(i)).append(")");
+        }
+        formatted.append("]");
+        return formatted.toString();
+    }
+
+    /**
+     * 根据值推断类型，直接在原文上逐字符判断，不创建字符串也不使用正则；无法判断的（包括带引号的值）为 STRING
+     */
+    private static String inferType(CharSequence source, int start, int end) {
+        int length = end - start;
+        if (length == 4 && SqlLinePrefilter.startsWithIgnoreCase(source, start, "null")) return "NULL";
+        if (SqlTemplate.isNumber(source, start, end)) return hasDot(source, start, end) ? "DECIMAL" : "INTEGER";
+        if (length == 4 && SqlLinePrefilter.startsWithIgnoreCase(source, start, "true")) return "BOOLEAN";
+        if (length == 5 && SqlLinePrefilter.startsWithIgnoreCase(source, start, "false")) return "BOOLEAN";
+        if (isDate(source, start, end)) return "DATE";
+        return "STRING";
+    }
+
+    private static boolean hasDot(CharSequence source, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (source.charAt(i) == '.') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否以 yyyy-MM-dd 开头
+     */
+    private static boolean isDate(CharSequence source, int start, int end) {
+        if (end - start < 10 || source.charAt(start + 4) != '-' || source.charAt(start + 7) != '-') {
+            return false;
+        }
+        for (int i = 0; i < 10; i++) {
+            if (i != 4 && i != 7 && !SqlTemplate.isDigit(source.charAt(start + i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,646 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 预编译的SQL模板：SQL只扫描一次，记录真正的 {@code ?} 占位符位置
+ * <p>
+ * 字符串常量（'...'、"..."）、反引号标识符以及 {@code --} 行注释、块注释中的问号不会被当作占位符。
+ * 生成完整SQL时按占位符把原SQL切成片段，与参数值依次追加到一个预先分配好容量的 {@link StringBuilder} 中，
+ * 耗时与SQL和参数的总长度成线性关系。
+ * <p>
+ * 如果SQL中有单独的 {@code IN (?)}，而参数比占位符多，多出的参数全部展开到该 IN 列表中。
+ * <p>
+ * 同一次扫描还会得到语句类型、引用的表名和归一化指纹，供过滤和统计复用；模板不可变，可以在线程间共享。
+ * <p>
+ * 用于着色显示的词法片段（{@link SqlLexer}）在第一次使用时生成并保存在模板中，每个模板只分析一次；
+ * 排版（{@link SqlLayout}）同样每个模板只生成一次，每次执行只按排版填入参数值。
+ */
+public final class SqlTemplate {
+
+    /**
+     * 语句类型，取自SQL的第一个关键字
+     */
+    public enum StatementType {
+        SELECT, INSERT, UPDATE, DELETE, OTHER
+    }
+
+    // 参数值的格式化方式
+    private static final int FORMAT_QUOTED_ESCAPED = 0;
+    private static final int FORMAT_QUOTED = 1;
+    private static final int FORMAT_RAW = 2;
+    private static final int FORMAT_INFER = 3;
+    // 类型名称 -> 格式化方式，类型名称种类有限
+    private static final ConcurrentHashMap<String, Integer> TYPE_FORMATS = new ConcurrentHashMap<>();
+
+    private static final int[] NO_PLACEHOLDERS = new int[0];
+    private static final String[] NO_TABLES = new String[0];
+
+    private final String sql;
+    private final int[] placeholders;
+    // 单独出现在 IN (?) 中的占位符序号，没有时为-1
+    private final int inPlaceholder;
+    private final StatementType statementType;
+    // FROM / JOIN / UPDATE / INTO 之后的表名，小写、去重
+    private final String[] tables;
+    private final String fingerprint;
+    private final long fingerprintHash;
+    // 第一次显示时生成，并发生成时结果相同，保留任意一个即可
+    private volatile SqlTokens tokens;
+    private volatile SqlLayout layout;
+    // 占位符保持为 ? 的排版结果
+    private volatile FormattedSql formatted;
+
+    private SqlTemplate(String sql, int[] placeholders, int inPlaceholder,
+                        StatementType statementType, String[] tables, String fingerprint) {
+        this.sql = sql;
+        this.placeholders = placeholders;
+        this.inPlaceholder = inPlaceholder;
+        this.statementType = statementType;
+        this.tables = tables;
+        this.fingerprint = fingerprint;
+        this.fingerprintHash = hash64(fingerprint);
+    }
+
+    /**
+     * 扫描SQL，找出所有占位符，同时提取语句类型、表名并生成指纹
+     */
+    public static SqlTemplate compile(String sql) {
+        int length = sql.length();
+        int[] placeholders = NO_PLACEHOLDERS;
+        int count = 0;
+        int inPlaceholder = -1;
+
+        StatementType statementType = null;
+        String[] tables = NO_TABLES;
+        int tableCount = 0;
+        // expectTable: 下一个标识符是表名；inTableList: 处于 FROM a, b 的表列表中，逗号后还是表名
+        boolean expectTable = false;
+        boolean inTableList = false;
+        StringBuilder fingerprint = new StringBuilder(length);
+
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            switch (c) {
+                case '\'':
+                    i = skipQuoted(sql, i, c);
+                    appendLiteral(fingerprint);
+                    continue;
+                case '"':
+                case '`': {
+                    int end = skipQuoted(sql, i, c);
+                    if (expectTable && end - i > 2) {
+                        tables = addTable(tables, tableCount++, sql.substring(i + 1, end - 1).toLowerCase());
+                        expectTable = false;
+                    }
+                    fingerprint.append(sql, i, end);
+                    i = end;
+                    continue;
+                }
+                case '-':
+                    if (i + 1 < length && sql.charAt(i + 1) == '-') {
+                        i = skipLineComment(sql, i);
+                        appendSpace(fingerprint);
+                        continue;
+                    }
+                    break;
+                case '/':
+                    if (i + 1 < length && sql.charAt(i + 1) == '*') {
+                        i = skipBlockComment(sql, i);
+                        appendSpace(fingerprint);
+                        continue;
+                    }
+                    break;
+                case '?':
+                    if (count == placeholders.length) {
+                        placeholders = Arrays.copyOf(placeholders, Math.max(8, count << 1));
+                    }
+                    if (inPlaceholder < 0 && isSingleInPlaceholder(sql, i)) {
+                        inPlaceholder = count;
+                    }
+                    placeholders[count++] = i;
+                    appendLiteral(fingerprint);
+                    i++;
+                    continue;
+                case ',':
+                    if (inTableList) {
+                        expectTable = true;
+                    }
+                    break;
+                case '(':
+                case ')':
+                    // 子查询由其中的 FROM 自行提取表名
+                    expectTable = false;
+                    inTableList = false;
+                    break;
+                default:
+                    if (c <= ' ') {
+                        appendSpace(fingerprint);
+                        i++;
+                        continue;
+                    }
+                    if (isDigit(c)) {
+                        // 数字常量
+                        i = skipNumber(sql, i);
+                        appendLiteral(fingerprint);
+                        continue;
+                    }
+                    if (isWordChar(c)) {
+                        int end = skipWord(sql, i);
+                        if (statementType == null) {
+                            statementType = statementTypeOf(sql, i, end);
+                        }
+                        if (expectTable) {
+                            tables = addTable(tables, tableCount++, sql.substring(i, end).toLowerCase());
+                            expectTable = false;
+                        } else if (isWord(sql, i, end, "from")) {
+                            expectTable = true;
+                            inTableList = true;
+                        } else if (isWord(sql, i, end, "join") || isWord(sql, i, end, "update") || isWord(sql, i, end, "into")) {
+                            expectTable = true;
+                            inTableList = false;
+                        } else if (inTableList && isClauseKeyword(sql, i, end)) {
+                            inTableList = false;
+                        }
+                        for (int k = i; k < end; k++) {
+                            fingerprint.append(Character.toLowerCase(sql.charAt(k)));
+                        }
+                        i = end;
+                        continue;
+                    }
+                    break;
+            }
+            fingerprint.append(c);
+            i++;
+        }
+
+        int fingerprintEnd = fingerprint.length();
+        while (fingerprintEnd > 0 && fingerprint.charAt(fingerprintEnd - 1) == ' ') {
+            fingerprintEnd--;
+        }
+        fingerprint.setLength(fingerprintEnd);
+
+        return new SqlTemplate(sql,
+                count == placeholders.length ? placeholders : Arrays.copyOf(placeholders, count),
+                inPlaceholder,
+                statementType != null ? statementType : StatementType.OTHER,
+                tableCount == tables.length ? tables : Arrays.copyOf(tables, tableCount),
+                fingerprint.toString());
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public int getPlaceholderCount() {
+        return placeholders.length;
+    }
+
+    /**
+     * 第 {@code index} 个占位符在SQL中的偏移
+     */
+    public int getPlaceholderOffset(int index) {
+        return placeholders[index];
+    }
+
+    public StatementType getStatementType() {
+        return statementType;
+    }
+
+    /**
+     * SQL引用的表名（小写，按出现顺序去重）
+     */
+    public List<String> getTables() {
+        return Collections.unmodifiableList(Arrays.asList(tables));
+    }
+
+    /**
+     * 是否有表名包含 {@code lowerCaseText}
+     */
+    public boolean referencesTable(String lowerCaseText) {
+        for (String table : tables) {
+            if (table.contains(lowerCaseText)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 归一化指纹：去掉注释、合并空白、关键字和标识符转小写，常量和占位符替换为 ?，
+     * 连续的 ?, ?, ? 合并为一个 ?，因此 IN 列表长度不同的同一条语句指纹相同
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * 指纹的64位哈希（FNV-1a）
+     */
+    public long getFingerprintHash() {
+        return fingerprintHash;
+    }
+
+    /**
+     * SQL的词法片段，用于着色显示
+     */
+    public SqlTokens getTokens() {
+        SqlTokens result = tokens;
+        if (result == null) {
+            result = SqlLexer.tokenize(sql);
+            tokens = result;
+        }
+        return result;
+    }
+
+    /**
+     * 排版后的SQL，占位符保持为 ?
+     */
+    public FormattedSql getFormatted() {
+        FormattedSql result = formatted;
+        if (result == null) {
+            result = getLayout().render(sql, getTokens(), null, placeholders.length, inPlaceholder);
+            formatted = result;
+        }
+        return result;
+    }
+
+    /**
+     * 按缓存的排版生成完整SQL，参数值填入占位符处，过长的 IN 列表折叠显示；参数不足时剩余的占位符保持为 ?
+     */
+    public FormattedSql format(SqlParameters params) {
+        return getLayout().render(sql, getTokens(), params, placeholders.length, inPlaceholder);
+    }
+
+    private SqlLayout getLayout() {
+        SqlLayout result = layout;
+        if (result == null) {
+            result = SqlLayout.build(sql, getTokens());
+            layout = result;
+        }
+        return result;
+    }
+
+    /**
+     * 用参数替换占位符，生成完整SQL；参数不足时剩余的占位符保持为 ?
+     */
+    public String render(SqlParameters params) {
+        if (placeholders.length == 0 || params.isEmpty()) {
+            return sql;
+        }
+        StringBuilder result = new StringBuilder(sql.length() + params.getSource().length() + params.size() * 2);
+        appendTo(result, params);
+        return result.toString();
+    }
+
+    public void appendTo(StringBuilder out, SqlParameters params) {
+        int paramCount = params.size();
+        // 参数比占位符多时，多出的参数展开到单独的 IN (?) 中
+        int inValues = inPlaceholder >= 0 && paramCount > placeholders.length
+                ? paramCount - placeholders.length + 1 : 1;
+
+        int offset = 0;
+        int param = 0;
+        for (int p = 0; p < placeholders.length && param < paramCount; p++) {
+            int position = placeholders[p];
+            out.append(sql, offset, position);
+            int values = p == inPlaceholder ? inValues : 1;
+            for (int v = 0; v < values; v++) {
+                if (v > 0) {
+                    out.append(", ");
+                }
+                appendValue(out, params, param++);
+            }
+            offset = position + 1;
+        }
+        out.append(sql, offset, sql.length());
+    }
+
+    /**
+     * 把一个参数值按类型格式化后追加到 {@code out}，直接从原文复制字符，不创建中间字符串
+     */
+    static void appendValue(StringBuilder out, SqlParameters params, int index) {
+        CharSequence source = params.getSource();
+        int start = params.getValueStart(index);
+        int end = params.getValueEnd(index);
+        if (end - start == 4 && SqlLinePrefilter.startsWithIgnoreCase(source, start, "null")) {
+            out.append("NULL");
+            return;
+        }
+
+        String type = params.type(index);
+        int format = type != null ? formatOf(type) : FORMAT_INFER;
+        if (format == FORMAT_INFER) {
+            format = inferFormat(source, start, end);
+        }
+
+        switch (format) {
+            case FORMAT_RAW:
+                out.append(source, start, end);
+                break;
+            case FORMAT_QUOTED:
+                out.append('\'').append(source, start, end).append('\'');
+                break;
+            default:
+                appendEscaped(out, source, start, end);
+                break;
+        }
+    }
+
+    private static int formatOf(String type) {
+        Integer format = TYPE_FORMATS.get(type);
+        if (format == null) {
+            format = classifyType(type);
+            TYPE_FORMATS.put(type, format);
+        }
+        return format;
+    }
+
+    private static int classifyType(String type) {
+        switch (type.toUpperCase()) {
+            case "STRING":
+            case "VARCHAR":
+            case "CHAR":
+            case "TEXT":
+            case "LONGVARCHAR":
+                return FORMAT_QUOTED_ESCAPED;
+
+            case "TIMESTAMP":
+            case "DATE":
+            case "TIME":
+                return FORMAT_QUOTED;
+
+            case "INTEGER":
+            case "BIGINT":
+            case "SMALLINT":
+            case "TINYINT":
+            case "INT":
+            case "LONG":
+            case "SHORT":
+            case "DECIMAL":
+            case "NUMERIC":
+            case "DOUBLE":
+            case "FLOAT":
+            case "REAL":
+            case "BOOLEAN":
+            case "BIT":
+                return FORMAT_RAW;
+
+            default:
+                // 如果类型不明确，根据值的格式推断
+                return FORMAT_INFER;
+        }
+    }
+
+    /**
+     * 数字、布尔值和已带单引号的值原样输出，其余按字符串处理
+     */
+    private static int inferFormat(CharSequence source, int start, int end) {
+        if (isNumber(source, start, end)
+                || (end - start == 4 && SqlLinePrefilter.startsWithIgnoreCase(source, start, "true"))
+                || (end - start == 5 && SqlLinePrefilter.startsWithIgnoreCase(source, start, "false"))
+                || isQuoted(source, start, end)) {
+            return FORMAT_RAW;
+        }
+        return FORMAT_QUOTED_ESCAPED;
+    }
+
+    private static void appendEscaped(StringBuilder out, CharSequence source, int start, int end) {
+        out.append('\'');
+        if (isQuoted(source, start, end)) {
+            // 值已经带有单引号，去掉后重新包裹，不再转义
+            out.append(source, start + 1, end - 1);
+        } else {
+            for (int i = start; i < end; i++) {
+                char c = source.charAt(i);
+                if (c == '\'') {
+                    out.append('\'');
+                }
+                out.append(c);
+            }
+        }
+        out.append('\'');
+    }
+
+    private static boolean isQuoted(CharSequence source, int start, int end) {
+        return end - start >= 2 && source.charAt(start) == '\'' && source.charAt(end - 1) == '\'';
+    }
+
+    /**
+     * 匹配 -?\d+ 或 -?\d+\.\d+
+     */
+    static boolean isNumber(CharSequence source, int start, int end) {
+        int i = start;
+        if (i < end && source.charAt(i) == '-') {
+            i++;
+        }
+        int digits = i;
+        while (i < end && isDigit(source.charAt(i))) {
+            i++;
+        }
+        if (i == digits) {
+            return false;
+        }
+        if (i < end && source.charAt(i) == '.') {
+            int fraction = ++i;
+            while (i < end && isDigit(source.charAt(i))) {
+                i++;
+            }
+            if (i == fraction) {
+                return false;
+            }
+        }
+        return i == end;
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * 判断 {@code index} 处的占位符是否单独位于 IN ( ? ) 中
+     */
+    private static boolean isSingleInPlaceholder(String sql, int index) {
+        int after = index + 1;
+        while (after < sql.length() && Character.isWhitespace(sql.charAt(after))) {
+            after++;
+        }
+        if (after >= sql.length() || sql.charAt(after) != ')') {
+            return false;
+        }
+
+        int before = index - 1;
+        while (before >= 0 && Character.isWhitespace(sql.charAt(before))) {
+            before--;
+        }
+        if (before < 0 || sql.charAt(before) != '(') {
+            return false;
+        }
+        before--;
+        while (before >= 0 && Character.isWhitespace(sql.charAt(before))) {
+            before--;
+        }
+        // 前面必须是独立的单词 IN
+        return before >= 1
+                && (sql.charAt(before) == 'n' || sql.charAt(before) == 'N')
+                && (sql.charAt(before - 1) == 'i' || sql.charAt(before - 1) == 'I')
+                && (before < 2 || !Character.isLetterOrDigit(sql.charAt(before - 2)) && sql.charAt(before - 2) != '_');
+    }
+
+    private static StatementType statementTypeOf(String sql, int start, int end) {
+        if (isWord(sql, start, end, "select") || isWord(sql, start, end, "with")) {
+            return StatementType.SELECT;
+        }
+        if (isWord(sql, start, end, "insert") || isWord(sql, start, end, "replace")) {
+            return StatementType.INSERT;
+        }
+        if (isWord(sql, start, end, "update")) {
+            return StatementType.UPDATE;
+        }
+        if (isWord(sql, start, end, "delete")) {
+            return StatementType.DELETE;
+        }
+        return StatementType.OTHER;
+    }
+
+    /**
+     * 结束 FROM 表列表的子句关键字
+     */
+    static boolean isClauseKeyword(String sql, int start, int end) {
+        switch (end - start) {
+            case 2:
+                return isWord(sql, start, end, "on");
+            case 3:
+                return isWord(sql, start, end, "set") || isWord(sql, start, end, "for");
+            case 4:
+                return isWord(sql, start, end, "left") || isWord(sql, start, end, "full");
+            case 5:
+                return isWord(sql, start, end, "where") || isWord(sql, start, end, "group") || isWord(sql, start, end, "order")
+                        || isWord(sql, start, end, "right") || isWord(sql, start, end, "inner") || isWord(sql, start, end, "outer")
+                        || isWord(sql, start, end, "cross") || isWord(sql, start, end, "limit") || isWord(sql, start, end, "union")
+                        || isWord(sql, start, end, "using");
+            case 6:
+                return isWord(sql, start, end, "having") || isWord(sql, start, end, "values") || isWord(sql, start, end, "select");
+            default:
+                return false;
+        }
+    }
+
+    static boolean isWord(String sql, int start, int end, String word) {
+        return end - start == word.length() && SqlLinePrefilter.startsWithIgnoreCase(sql, start, word);
+    }
+
+    static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || isDigit(c) || c == '_' || c == '$'
+                || (c > 127 && Character.isLetter(c));
+    }
+
+    /**
+     * 标识符可以带 schema 前缀，如 db.user
+     */
+    static int skipWord(String sql, int start) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (!isWordChar(c) && !(c == '.' && i + 1 < sql.length() && isWordChar(sql.charAt(i + 1)))) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    static int skipNumber(String sql, int start) {
+        int i = start + 1;
+        while (i < sql.length() && (isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static String[] addTable(String[] tables, int count, String table) {
+        for (int i = 0; i < count; i++) {
+            if (tables[i].equals(table)) {
+                return tables;
+            }
+        }
+        if (count == tables.length) {
+            tables = Arrays.copyOf(tables, Math.max(4, count << 1));
+        }
+        tables[count] = table;
+        return tables;
+    }
+
+    private static void appendSpace(StringBuilder fingerprint) {
+        int length = fingerprint.length();
+        if (length > 0 && fingerprint.charAt(length - 1) != ' ') {
+            fingerprint.append(' ');
+        }
+    }
+
+    /**
+     * 常量和占位符统一记为 ?；紧跟在 "?," 之后时并入前一个，IN 列表和多值参数归一为一个 ?
+     */
+    private static void appendLiteral(StringBuilder fingerprint) {
+        int i = fingerprint.length();
+        while (i > 0 && fingerprint.charAt(i - 1) == ' ') {
+            i--;
+        }
+        if (i > 0 && fingerprint.charAt(i - 1) == ',') {
+            int j = i - 1;
+            while (j > 0 && fingerprint.charAt(j - 1) == ' ') {
+                j--;
+            }
+            if (j > 0 && fingerprint.charAt(j - 1) == '?') {
+                fingerprint.setLength(j);
+                return;
+            }
+        }
+        fingerprint.append('?');
+    }
+
+    private static long hash64(String text) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\' && quote != '`') {
+                // 反斜杠转义（MySQL）
+                i += 2;
+                continue;
+            }
+            if (c == quote) {
+                // 连续两个引号表示转义
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                    continue;
+                }
+                return i + 1;
+            }
+            i++;
+        }
+        return sql.length();
+    }
+
+    static int skipLineComment(String sql, int start) {
+        int end = sql.indexOf('\n', start);
+        return end < 0 ? sql.length() : end + 1;
+    }
+
+    static int skipBlockComment(String sql, int start) {
+        int end = sql.indexOf("*/", start + 2);
+        return end < 0 ? sql.length() : end + 2;
+    }
+}
@@ -0,0 +1,74 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import java.util.Arrays;
+
+/**
+ * {@link SqlLexer} 的分析结果
+ * <p>
+ * 以并列数组保存每个词法片段在SQL中的偏移范围和种类，片段之间未覆盖的部分是空白。
+ * 结果不可变，随 {@link SqlTemplate} 缓存，同一模板的每次执行共用。
+ */
+public final class SqlTokens {
+
+    /**
+     * 片段种类；标识符按所在位置分为表名、函数名、字段名和别名
+     */
+    public enum Kind {
+        KEYWORD, TABLE, FUNCTION, FIELD, ALIAS, STRING, NUMBER, PLACEHOLDER, OPERATOR, PUNCTUATION, COMMENT
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private int count;
+    private int[] starts;
+    private int[] ends;
+    private byte[] kinds;
+
+    SqlTokens(int capacity) {
+        int size = Math.max(8, capacity);
+        this.starts = new int[size];
+        this.ends = new int[size];
+        this.kinds = new byte[size];
+    }
+
+    void add(int start, int end, Kind kind) {
+        if (count == starts.length) {
+            int size = count << 1;
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            kinds = Arrays.copyOf(kinds, size);
+        }
+        starts[count] = start;
+        ends[count] = end;
+        kinds[count] = (byte) kind.ordinal();
+        count++;
+    }
+
+    /**
+     * 释放数组中未使用的容量，分析完成后调用
+     */
+    SqlTokens trimToSize() {
+        if (count < starts.length) {
+            starts = Arrays.copyOf(starts, count);
+            ends = Arrays.copyOf(ends, count);
+            kinds = Arrays.copyOf(kinds, count);
+        }
+        return this;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int start(int index) {
+        return starts[index];
+    }
+
+    public int end(int index) {
+        return ends[index];
+    }
+
+    public Kind kind(int index) {
+        return KINDS[kinds[index]];
+    }
+}
@@ -0,0 +1,83 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 项目级的日志摄取计数，汇总该项目所有控制台的摄取管道和SQL关联
+ * <p>
+ * 控制台过滤器没有生命周期回调，各自的计数无法在关闭时输出；
+ * 每个过滤器的消费线程在处理完一批日志和空闲时把计数的增量累加到这里，工具窗口的状态提示中显示。
+ */
+@Service(Service.Level.PROJECT)
+public final class IngestionStats {
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong maxDepth = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong orphans = new AtomicLong();
+
+    public static IngestionStats getInstance(Project project) {
+        return project.getService(IngestionStats.class);
+    }
+
+    /**
+     * 累加一个摄取管道自上次发布以来的入队和丢弃数量，最大深度取所有管道中的最大值
+     */
+    public void addPipeline(long enqueuedDelta, long droppedDelta, long depth) {
+        if (enqueuedDelta != 0) {
+            enqueued.addAndGet(enqueuedDelta);
+        }
+        if (droppedDelta != 0) {
+            dropped.addAndGet(droppedDelta);
+        }
+        if (depth > maxDepth.get()) {
+            maxDepth.accumulateAndGet(depth, Math::max);
+        }
+    }
+
+    /**
+     * 累加因超时而发布的执行数量，其中 {@code orphanDelta} 条是没有参数的孤立SQL
+     */
+    public void addExpired(long expiredDelta, long orphanDelta) {
+        if (expiredDelta != 0) {
+            expired.addAndGet(expiredDelta);
+        }
+        if (orphanDelta != 0) {
+            orphans.addAndGet(orphanDelta);
+        }
+    }
+
+    public long getEnqueuedCount() {
+        return enqueued.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * 因超时而发布的执行数量（包括孤立SQL）
+     */
+    public long getExpiredCount() {
+        return expired.get();
+    }
+
+    /**
+     * 超时仍没有参数、按孤立SQL发布的数量
+     */
+    public long getOrphanCount() {
+        return orphans.get();
+    }
+
+    public String getStatsSummary() {
+        return "enqueued=" + enqueued.get() + ", dropped=" + dropped.get() + ", maxDepth=" + maxDepth.get()
+                + ", expired=" + expired.get() + ", orphans=" + orphans.get();
+    }
+}
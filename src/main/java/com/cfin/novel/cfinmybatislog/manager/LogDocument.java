@@ -0,0 +1,194 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+import javax.swing.event.DocumentEvent;
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.GapContent;
+import javax.swing.text.SimpleAttributeSet;
+import javax.swing.text.Style;
+import javax.swing.text.StyleContext;
+import javax.swing.undo.UndoableEdit;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 日志窗格使用的文档，支持把一批 {@link StyledRuns} 作为一次编辑插入
+ * <p>
+ * 逐段调用 {@code insertString} 时每一段都会触发一次文档事件和一次布局失效；
+ * 这里把整批片段转换成 {@link ElementSpec} 数组交给 {@link DefaultStyledDocument#insert}，
+ * 只产生一个事件。生成的元素结构与逐段插入相同（段落按换行拆分），叶子元素以同名样式为解析父级。
+ * <p>
+ * 日志窗格不支持撤销，文本存储删除时不生成撤销记录，见 {@link LogContent}。
+ */
+final class LogDocument extends DefaultStyledDocument {
+    private static final long serialVersionUID = 1L;
+
+    // 按样式名缓存的文本元素属性，样式被替换时重新生成
+    private final Map<String, AttributeSet> leafAttributes = new HashMap<>();
+
+    // changeStyles 执行期间样式的修改只做记录，结束后统一通知
+    private boolean batchingStyles;
+    private boolean stylesChanged;
+
+    LogDocument() {
+        super(new LogContent(), new LogStyleContext());
+    }
+
+    /**
+     * 在 {@code offset} 处插入一批片段，{@code offset} 必须位于段落开头（文档开头或紧跟换行符）
+     */
+    void insertRuns(int offset, StyledRuns runs) throws BadLocationException {
+        if (runs.isEmpty()) {
+            return;
+        }
+        boolean afterNewline = offset > 0 && getText(offset - 1, 1).charAt(0) == '\n';
+        if (offset > 0 && !afterNewline) {
+            // 段落中间插入需要拆分当前段落，交给逐段插入处理
+            int position = offset;
+            for (int i = 0; i < runs.runCount(); i++) {
+                char[] chars = new char[runs.runEnd(i) - runs.runStart(i)];
+                runs.getChars(runs.runStart(i), runs.runEnd(i), chars, 0);
+                insertString(position, new String(chars), leafAttributes(runs.runStyle(i)));
+                position += chars.length;
+            }
+            return;
+        }
+
+        AttributeSet paragraphAttributes = getParagraphElement(offset).getAttributes();
+        List<ElementSpec> specs = new ArrayList<>(runs.runCount() * 2 + 4);
+        if (afterNewline) {
+            // 与 insertString 在换行符之后插入时一致：先结束前一个段落
+            specs.add(new ElementSpec(paragraphAttributes, ElementSpec.EndTagType));
+            specs.add(new ElementSpec(paragraphAttributes, ElementSpec.StartTagType));
+        }
+        ElementSpec lastStart = null;
+        for (int i = 0; i < runs.runCount(); i++) {
+            AttributeSet style = leafAttributes(runs.runStyle(i));
+            char[] chars = new char[runs.runEnd(i) - runs.runStart(i)];
+            runs.getChars(runs.runStart(i), runs.runEnd(i), chars, 0);
+            int start = 0;
+            for (int j = 0; j < chars.length; j++) {
+                if (chars[j] == '\n') {
+                    specs.add(new ElementSpec(style, ElementSpec.ContentType, chars, start, j + 1 - start));
+                    specs.add(new ElementSpec(null, ElementSpec.EndTagType));
+                    lastStart = new ElementSpec(paragraphAttributes, ElementSpec.StartTagType);
+                    specs.add(lastStart);
+                    start = j + 1;
+                }
+            }
+            if (start < chars.length) {
+                specs.add(new ElementSpec(style, ElementSpec.ContentType, chars, start, chars.length - start));
+            }
+        }
+        if (lastStart == null && afterNewline) {
+            lastStart = specs.get(1);
+        }
+        if (lastStart != null) {
+            // 最后一个新段落与插入点之后原有的内容合并
+            lastStart.setDirection(afterNewline ? ElementSpec.JoinNextDirection : ElementSpec.JoinFractureDirection);
+        }
+        insert(offset, specs.toArray(new ElementSpec[0]));
+    }
+
+    /**
+     * EDT：执行一组样式修改，结束后立即通知视图一次
+     * <p>
+     * 默认实现每修改一个样式属性都会用 invokeLater 安排一次整篇文档的变化通知，
+     * 这里合并成一次并同步发出，调用方随后即可按新样式布局并定位视口。
+     */
+    void changeStyles(Runnable change) {
+        batchingStyles = true;
+        try {
+            change.run();
+        } finally {
+            batchingStyles = false;
+        }
+        if (stylesChanged) {
+            stylesChanged = false;
+            if (getLength() > 0) {
+                writeLock();
+                try {
+                    DefaultDocumentEvent event = new DefaultDocumentEvent(0, getLength(), DocumentEvent.EventType.CHANGE);
+                    event.end();
+                    fireChangedUpdate(event);
+                } finally {
+                    writeUnlock();
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void styleChanged(Style style) {
+        if (batchingStyles) {
+            stylesChanged = true;
+            return;
+        }
+        super.styleChanged(style);
+    }
+
+    /**
+     * 文本元素使用的属性：只引用同名样式而不复制其属性
+     * <p>
+     * 直接把样式作为属性插入时，元素会复制样式自身的字体等属性，之后修改样式不再影响已插入的文本。
+     * 只设置解析父级时字体、颜色都在绘制时从样式解析，修改样式即可改变全部文本。
+     */
+    AttributeSet leafAttributes(String name) {
+        Style style = getStyle(name);
+        if (style == null) {
+            style = getStyle(StyleContext.DEFAULT_STYLE);
+        }
+        AttributeSet cached = leafAttributes.get(name);
+        if (cached != null && cached.getResolveParent() == style) {
+            return cached;
+        }
+        SimpleAttributeSet resolver = new SimpleAttributeSet();
+        resolver.setResolveParent(style);
+        // 转换为共享的不可变集合，新建文本元素时直接使用，见 LogStyleContext
+        StyleContext context = (StyleContext) getAttributeContext();
+        AttributeSet attributes = context.addAttributes(context.getEmptySet(), resolver);
+        leafAttributes.put(name, attributes);
+        return attributes;
+    }
+
+    /**
+     * 每个文本元素创建时都会把传入的属性并入空集合，默认实现每次都在共享集合缓存中查找一遍；
+     * 传入的已经是不可变的共享集合时，合并结果就是它本身，直接返回
+     */
+    private static final class LogStyleContext extends StyleContext {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized AttributeSet addAttributes(AttributeSet old, AttributeSet attr) {
+            if (old.getAttributeCount() == 0 && attr instanceof SmallAttributeSet) {
+                return attr;
+            }
+            return super.addAttributes(old, attr);
+        }
+    }
+
+    /**
+     * 删除时不生成撤销记录的文本存储
+     * <p>
+     * {@link GapContent} 删除文本时会复制被删除的字符串，并收集范围内的全部位置标记以便撤销后恢复；
+     * 每个文本元素有两个位置标记，裁剪窗口前部时这部分开销与被删除的元素数量成正比。这里直接删除，
+     * 位置标记仍按删除正常移动。
+     */
+    private static final class LogContent extends GapContent {
+        private static final long serialVersionUID = 1L;
+        private static final char[] NO_CHARS = new char[0];
+
+        @Override
+        public UndoableEdit remove(int where, int nitems) throws BadLocationException {
+            if (where + nitems >= length()) {
+                throw new BadLocationException("Invalid remove", length() + 1);
+            }
+            replace(where, nitems, NO_CHARS, 0);
+            return null;
+        }
+    }
+}
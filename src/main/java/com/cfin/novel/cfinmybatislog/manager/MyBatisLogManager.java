@@ -1,11 +1,16 @@
 package com.cfin.novel.cfinmybatislog.manager;
 
+import com.cfin.novel.cfinmybatislog.filter.FormattedSql;
+import com.cfin.novel.cfinmybatislog.filter.SqlParameters;
+import com.cfin.novel.cfinmybatislog.filter.SqlTemplate;
+import com.cfin.novel.cfinmybatislog.filter.SqlTokens;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.components.Service;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.components.JBTextArea;
 import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.util.ui.JBUI;
 import com.intellij.openapi.Disposable;
@@ -13,31 +18,57 @@ import com.intellij.openapi.Disposable;
 import javax.swing.*;
 import javax.swing.text.*;
 import java.awt.*;
+import java.awt.event.AdjustmentEvent;
+import java.awt.event.AdjustmentListener;
+import java.awt.geom.Rectangle2D;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.IntConsumer;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.List;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.UUID;
+import java.util.prefs.Preferences;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 
 @Service(Service.Level.PROJECT)
 public final class MyBatisLogManager implements Disposable {
     private static final Logger LOG = Logger.getInstance(MyBatisLogManager.class);
 
     // 性能优化配置
-    private static final int MAX_LOG_ENTRIES = 5000; // 限制日志条目数量
-    private static final int BATCH_PROCESS_SIZE = 20; // 每批处理的日志数量
-    private static final long PROCESSING_DELAY_MS = 300; // 处理延迟（毫秒）
+    private static final int MAX_LOG_ENTRIES = 50000; // 限制日志条目数量，文档只显示其中一个窗口，不再随之增大
+    private static final long FLUSH_INTERVAL_MS = 16; // 两次刷新显示之间的间隔（约一帧），新日志到达后也等待这么久再刷新以合并一批
+    private static final int MIN_FLUSH_ENTRIES = 20; // 每次刷新至少处理的日志数量
+    private static final int MAX_FLUSH_ENTRIES = 5000; // 每次刷新最多处理的日志数量
+    private static final long INITIAL_EDT_NANOS_PER_ENTRY = 50_000; // 尚未测量时估计的每条日志EDT耗时
+    private static final String EDT_BUDGET_PREF_KEY = "cfin.mybatis.log.edt.budget.ms"; // 每次刷新的EDT时间预算（毫秒）
+    private static final int DEFAULT_EDT_BUDGET_MS = 8;
+    private static final String FORMAT_SQL_PREF_KEY = "cfin.mybatis.log.format.sql"; // 是否排版显示SQL
+    private static final int FORMAT_MIN_SQL_LENGTH = 120; // 短于该长度的SQL不排版，保持单行
     private static final boolean LIMIT_OUTPUT = true; // 是否限制输出
     private static final int MAX_DOCUMENT_LENGTH = 500000; // 文档最大长度(字符)
+    private static final int RENDERED_SQL_CACHE_SIZE = 64; // 缓存最近生成的完整SQL数量
+    private static final int RENDERED_RUNS_CACHE_CHARS = 2_000_000; // 缓存在记录上的样式文本总长度上限(字符)
+    private static final int FILTER_CANCEL_CHECK_INTERVAL = 256; // 后台过滤每处理多少条检查一次是否已被取消
+    private static final int VIEW_WINDOW_STATEMENTS = 500; // 文档中最多保留的语句数量
+    private static final int VIEW_PAGE_STATEMENTS = 100; // 滚动到顶部或底部时每次载入的语句数量
+    private static final String SEPARATOR = "----------------------------------------";
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
 
     // 定义更丰富的颜色模式 - 使用现代UI设计风格的色彩
     // SQL关键字颜色 - 蓝色系 (更亮的蓝色以增强对比度)
@@ -130,52 +161,106 @@ public final class MyBatisLogManager implements Disposable {
             new Color(200, 200, 60)    // 暗色模式：亮黄绿色
     );
 
-    // SQL正则表达式
-    private static final Pattern SQL_KEYWORDS = Pattern.compile("\\b(SELECT|INSERT|UPDATE|DELETE|FROM|WHERE|AND|OR|INNER JOIN|LEFT JOIN|RIGHT JOIN|JOIN|GROUP BY|ORDER BY|HAVING|LIMIT|OFFSET|AS|ON|VALUES|SET|IN|BETWEEN|LIKE|IS NULL|IS NOT NULL|COUNT|SUM|AVG|MAX|MIN|DISTINCT|UNION|ALL)\\b", Pattern.CASE_INSENSITIVE);
-    private static final Pattern SQL_OPERATORS = Pattern.compile("(=|!=|<>|>|<|>=|<=|\\+|-|\\*|/|%|\\(|\\)|,|;)");
-    private static final Pattern SQL_QUOTES = Pattern.compile("'[^']*'");
-    private static final Pattern SQL_NUMBERS = Pattern.compile("\\b\\d+(\\.\\d+)?\\b");
-    private static final Pattern SQL_TABLE_ALIAS = Pattern.compile("\\b[a-zA-Z0-9_]+\\.[a-zA-Z0-9_]+\\b");
-    private static final Pattern SQL_FIELDS = Pattern.compile("\\b([a-zA-Z0-9_]+)\\b(?=\\s*[,=])");
-    
-    // 参数正则表达式
-    private static final Pattern PARAM_INDEX = Pattern.compile("\\d+:");
-    private static final Pattern PARAM_TYPE = Pattern.compile("\\(([A-Z]+)\\)");
-    private static final Pattern PARAM_NULL = Pattern.compile("\\bnull\\b", Pattern.CASE_INSENSITIVE);
-    
-    // 表名后的字段列表正则
-    private static final Pattern TABLE_FIELDS = Pattern.compile("(?<=FROM|INTO|UPDATE)\\s+\\w+\\s*\\(([^)]+)\\)");
-
     private final Project project;
     private JTextPane textPane;  // 使用标准的JTextPane
+    // 日志显示字体，作为文档默认样式的字体，后台构建的文档也使用它
+    private volatile Font displayFont;
     private final ConcurrentLinkedQueue<LogEntry> logQueue = new ConcurrentLinkedQueue<>();
-    private final List<LogEntry> allLogs = Collections.synchronizedList(new ArrayList<>());
-    private String currentFilter = "";
+    // 所有保留的日志条目，环形存储，超过上限时覆盖最旧的条目
+    private final StatementStore<LogEntry> allLogs = new StatementStore<>(MAX_LOG_ENTRIES);
+    private volatile String currentFilter = "";
+    // 按模板、语句ID和参数值建立的倒排索引，过滤时不再逐条扫描 allLogs
+    private final StatementIndex statementIndex = new StatementIndex();
+    
+    // 后台过滤：每次过滤请求递增代号，新请求到达时旧请求作废
+    private final ExecutorService filterExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "MyBatis-Log-Filter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicLong filterGeneration = new AtomicLong();
+    private Future<?> pendingFilter;
+    // 文档中已包含序号小于该值的所有可见条目，只在EDT中写入，用于避免刷新后重复追加
+    private volatile long displayedUpTo;
+    
+    // 文档只包含一个窗口内的完整语句，以下字段只在EDT中读写
+    private StatementWindow window = new StatementWindow();
+    // 为true时窗口跟随最新日志；向上翻页后为false，新日志只保存不显示，滚动到底部时再载入
+    private boolean followTail = true;
+    // 当前过滤条件的匹配结果（过滤条件为空时为null），翻页时从中查找前后的语句
+    private long[] filterMatches;
+    // filterMatches 只包含序号小于该值的记录，之后到达的记录翻页时逐条判断
+    private long filterMatchesEnd;
+    private JScrollBar verticalScrollBar;
+    private final AdjustmentListener scrollListener = this::onScroll;
+    // 翻页修改文档并恢复视口期间忽略滚动事件，避免连续翻页
+    private boolean adjustingViewport;
+    // 上次滚动事件时滚动条的位置
+    private int lastScrollValue;
     
     // 性能优化相关变量
-    private final AtomicBoolean isProcessing = new AtomicBoolean(false);
-    private ScheduledExecutorService logProcessor;
+    private volatile ScheduledExecutorService logProcessor;
     private final ReentrantLock processingLock = new ReentrantLock();
-    private boolean isInitialized = false;
-    private long lastCleanupTime = System.currentTimeMillis();
+    private volatile boolean isInitialized = false;
+    
+    // 自适应刷新：队列为空时不调度，新日志到达时才安排一次刷新；一次刷新在EDT中应用完之后才安排下一次
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicInteger queuedCount = new AtomicInteger();
+    private final long edtBudgetNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1,
+            Preferences.userNodeForPackage(MyBatisLogManager.class).getInt(EDT_BUDGET_PREF_KEY, DEFAULT_EDT_BUDGET_MS)));
+    // 根据最近几次刷新测得的每条日志EDT耗时，用于决定下一次处理多少条
+    private volatile long edtNanosPerEntry = INITIAL_EDT_NANOS_PER_ENTRY;
+    // 最近一次刷新时最旧日志的等待时间
+    private volatile long lastFlushLagNanos;
+    // 最近一次刷新开始的时间，下一次刷新与它间隔一帧
+    private volatile long flushStartedAt;
     
     // 启用/禁用处理
     private final AtomicBoolean enabled = new AtomicBoolean(true);
-    private final ConcurrentLinkedQueue<LogEntry> pendingQueue = new ConcurrentLinkedQueue<>();
+    // 禁用期间积累的日志，同样有容量上限
+    private final StatementStore<LogEntry> pendingLogs = new StatementStore<>(MAX_LOG_ENTRIES);
+    
+    // 最近生成的完整SQL，显示后紧接着复制或重新过滤时不必重复生成
+    private final Map<SqlStatementRecord, String> renderedSql = new LinkedHashMap<SqlStatementRecord, String>(RENDERED_SQL_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<SqlStatementRecord, String> eldest) {
+            return size() > RENDERED_SQL_CACHE_SIZE;
+        }
+    };
 
-    // 日志条目类
+    // 已缓存样式文本的记录，按缓存先后排列，总长度超过上限时清除最早的缓存；在 synchronized (renderedRecords) 中访问
+    private final ArrayDeque<SqlStatementRecord> renderedRecords = new ArrayDeque<>();
+    private long renderedChars;
+    // 最近一次翻页时每条语句的EDT耗时
+    private volatile long pageNanosPerEntry;
+    // 是否排版显示较长的SQL；修改时清除已缓存的样式文本并重建文档
+    private volatile boolean formatSql = Preferences.userNodeForPackage(MyBatisLogManager.class)
+            .getBoolean(FORMAT_SQL_PREF_KEY, false);
+
+    // 日志条目：一次SQL执行的记录，或一条普通文本消息
     private static class LogEntry {
-        final String type;
+        // 普通消息的文本，SQL执行为null
         final String content;
+        // SQL执行的记录，显示的各行都由它生成；普通消息为null
+        final SqlStatementRecord record;
+        // 在 allLogs 中的序号，加入之前为-1
+        volatile long sequence = -1;
+        // 放入显示队列的时间（System.nanoTime），用于统计显示延迟
+        long queuedAt;
         
-        LogEntry(String type, String content) {
-            this.type = type;
+        LogEntry(String content) {
             this.content = content;
+            this.record = null;
+        }
+        
+        LogEntry(SqlStatementRecord record) {
+            this.content = null;
+            this.record = record;
         }
         
         @Override
         public String toString() {
-            return content;
+            return content != null ? content : record.getSql();
         }
     }
 
@@ -208,6 +293,7 @@ public final class MyBatisLogManager implements Disposable {
                 try {
                     StyledDocument doc = textPane.getStyledDocument();
                     doc.remove(0, doc.getLength());
+                    window.clear();
                     doc.insertString(0, "MyBatis SQL Logger is active and waiting for logs...\n", doc.getStyle("label-bold"));
                 } catch (BadLocationException e) {
                     LOG.error("Error updating text pane", e);
@@ -222,23 +308,15 @@ public final class MyBatisLogManager implements Disposable {
      * 处理在禁用期间积累的日志
      */
     private void processPendingLogs() {
-        LOG.info("Processing " + pendingQueue.size() + " pending logs");
-        LogEntry entry;
-        while ((entry = pendingQueue.poll()) != null) {
-            logQueue.offer(entry);
-            
-            // 添加到总日志列表，并限制大小
-            synchronized (allLogs) {
-                allLogs.add(entry);
-                // 限制最大日志数量
-                while (allLogs.size() > MAX_LOG_ENTRIES) {
-                    allLogs.remove(0);
-                }
-            }
-        }
+        LOG.info("Processing " + pendingLogs.size() + " pending logs");
+        pendingLogs.forEach((sequence, entry) -> {
+            publishEntry(entry);
+            return true;
+        });
+        pendingLogs.clear();
     }
     
-    private void initializeProcessor() {
+    private synchronized void initializeProcessor() {
         if (isInitialized) return;
         
         LOG.info("Initializing MyBatis Log processor");
@@ -250,12 +328,38 @@ public final class MyBatisLogManager implements Disposable {
             return thread;
         });
         
-        // 周期性处理日志队列
-        logProcessor.scheduleWithFixedDelay(this::processQueuedLogs, 
-            PROCESSING_DELAY_MS, PROCESSING_DELAY_MS, TimeUnit.MILLISECONDS);
-        
+        // 不再周期性唤醒，日志到达时由 requestFlush 安排处理
         isInitialized = true;
     }
+    
+    /**
+     * 安排一次刷新显示，已经安排或正在进行时什么也不做
+     */
+    private void requestFlush(long delayMs) {
+        if (!flushScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        if (!isInitialized) {
+            initializeProcessor();
+        }
+        try {
+            logProcessor.schedule(this::processQueuedLogs, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 已释放
+            flushScheduled.set(false);
+        }
+    }
+    
+    /**
+     * 本次刷新结束，队列中还有日志时在下一帧继续
+     */
+    private void finishFlush() {
+        flushScheduled.set(false);
+        if (!logQueue.isEmpty()) {
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - flushStartedAt);
+            requestFlush(Math.max(0, FLUSH_INTERVAL_MS - elapsedMs));
+        }
+    }
 
     public static MyBatisLogManager getInstance(Project project) {
         return project.getService(MyBatisLogManager.class);
@@ -267,9 +371,29 @@ public final class MyBatisLogManager implements Disposable {
         }
         
         this.textPane = textPane;
+        window.clear();
+        followTail = true;
+        
+        // 文档内容由窗口管理，插入删除时不让光标带动滚动，是否滚到底部由 followTail 决定
+        if (textPane.getCaret() instanceof DefaultCaret) {
+            ((DefaultCaret) textPane.getCaret()).setUpdatePolicy(DefaultCaret.NEVER_UPDATE);
+        }
+        // 滚动到顶部或底部时载入更早或更新的语句
+        if (verticalScrollBar != null) {
+            verticalScrollBar.removeAdjustmentListener(scrollListener);
+        }
+        JScrollPane scrollPane = (JScrollPane) SwingUtilities.getAncestorOfClass(JScrollPane.class, textPane);
+        verticalScrollBar = scrollPane != null ? scrollPane.getVerticalScrollBar() : null;
+        if (verticalScrollBar != null) {
+            verticalScrollBar.addAdjustmentListener(scrollListener);
+        }
         
-        // 配置文本窗格
+        // 配置文本窗格，使用支持批量插入的文档
+        if (!(textPane.getStyledDocument() instanceof LogDocument)) {
+            textPane.setStyledDocument(new LogDocument());
+        }
         StyledDocument doc = textPane.getStyledDocument();
+        displayFont = textPane.getFont();
         
         // 设置默认样式
         Style defaultStyle = StyleContext.getDefaultStyleContext().getStyle(StyleContext.DEFAULT_STYLE);
@@ -277,9 +401,36 @@ public final class MyBatisLogManager implements Disposable {
                 UIManager.getFont("Editor.font").getFamily() : 
                 "JetBrains Mono".equals(UIManager.get("Editor.font.name")) ? 
                 "JetBrains Mono" : "Monospaced");
+        installStyles(doc);
+        
+        // 显示初始状态消息
+        try {
+            if (enabled.get()) {
+                doc.insertString(0, "MyBatis SQL Logger is active and waiting for logs...\n", doc.getStyle("label-bold"));
+            } else {
+                doc.insertString(0, "MyBatis SQL Logger will start after application initialization completes...\n", doc.getStyle("label-bold"));
+            }
+            LOG.info("Added startup message to text pane");
+        } catch (BadLocationException e) {
+            LOG.error("Error adding startup message", e);
+        }
+        
+        // 设置窗格之前到达的日志
+        requestFlush(0);
+    }
+    
+    /**
+     * 在文档中定义显示日志所用的样式，后台构建的新文档也使用同一套样式
+     */
+    private void installStyles(StyledDocument doc) {
+        Style defaultStyle = StyleContext.getDefaultStyleContext().getStyle(StyleContext.DEFAULT_STYLE);
         
         // 定义各种样式
         addStyle(doc, "default", defaultStyle);
+        Font font = displayFont;
+        if (font != null) {
+            applyFont(doc, font);
+        }
         
         // 添加普通样式
         addColorStyle(doc, "keyword", KEYWORD_COLOR);
@@ -305,18 +456,6 @@ public final class MyBatisLogManager implements Disposable {
         addBoldStyle(doc, "complete-sql-bold", COMPLETE_SQL_COLOR);
         addBoldStyle(doc, "param-bold", PARAM_COLOR);
         addBoldStyle(doc, "time-bold", TIME_COLOR);
-        
-        // 显示初始状态消息
-        try {
-            if (enabled.get()) {
-                doc.insertString(0, "MyBatis SQL Logger is active and waiting for logs...\n", doc.getStyle("label-bold"));
-            } else {
-                doc.insertString(0, "MyBatis SQL Logger will start after application initialization completes...\n", doc.getStyle("label-bold"));
-            }
-            LOG.info("Added startup message to text pane");
-        } catch (BadLocationException e) {
-            LOG.error("Error adding startup message", e);
-        }
     }
     
     private void addStyle(StyledDocument doc, String name, Style parent) {
@@ -327,6 +466,54 @@ public final class MyBatisLogManager implements Disposable {
                 "JetBrains Mono" : "Monospaced");
     }
     
+    /**
+     * EDT：更改日志显示字体
+     * <p>
+     * 所有文本的字体都通过样式解析到文档的默认样式，这里只修改该样式，
+     * 文档随之重新布局，不会删除或重新插入任何内容，视口保持在原来的文字上。
+     * 颜色使用 {@link JBColor}，切换主题时同样无需重建。
+     */
+    public void setDisplayFont(Font font) {
+        displayFont = font;
+        if (textPane == null) {
+            return;
+        }
+        StyledDocument doc = textPane.getStyledDocument();
+        // 文本窗格的UI在设置字体时也会修改默认样式，两处修改合并为一次通知
+        Runnable change = () -> {
+            textPane.setFont(font);
+            applyFont(doc, font);
+        };
+        if (followTail) {
+            runStyleChange(doc, change);
+            textPane.setCaretPosition(doc.getLength());
+        } else {
+            keepViewport(0, () -> runStyleChange(doc, change));
+        }
+    }
+    
+    private static void runStyleChange(StyledDocument doc, Runnable change) {
+        if (doc instanceof LogDocument) {
+            ((LogDocument) doc).changeStyles(change);
+        } else {
+            change.run();
+        }
+    }
+    
+    private static void applyFont(StyledDocument doc, Font font) {
+        Style style = doc.getStyle("default");
+        if (style == null) {
+            return;
+        }
+        // 值未变化时不修改，修改样式会使整个文档重新布局
+        if (!font.getFamily().equals(StyleConstants.getFontFamily(style))) {
+            StyleConstants.setFontFamily(style, font.getFamily());
+        }
+        if (StyleConstants.getFontSize(style) != font.getSize()) {
+            StyleConstants.setFontSize(style, font.getSize());
+        }
+    }
+    
     private void addColorStyle(StyledDocument doc, String name, Color color) {
         Style style = doc.addStyle(name, doc.getStyle("default"));
         StyleConstants.setForeground(style, color);
@@ -338,55 +525,80 @@ public final class MyBatisLogManager implements Disposable {
         StyleConstants.setBold(style, true);
     }
 
+    /**
+     * 添加一条普通文本消息，只在没有过滤条件时显示
+     */
     public void addLog(String log) {
         if (log == null || log.trim().isEmpty()) return;
+        addEntry(new LogEntry(log));
+    }
+    
+    /**
+     * 发布一次SQL执行，每次执行只产生一个条目，显示的各行在显示时由记录生成
+     */
+    public void addStatement(SqlStatementRecord record) {
+        addEntry(new LogEntry(record));
+    }
+    
+    /**
+     * 获取记录对应的完整SQL，最近生成过的直接从缓存返回
+     */
+    public String getCompleteSql(SqlStatementRecord record) {
+        synchronized (renderedSql) {
+            String cached = renderedSql.get(record);
+            if (cached != null) {
+                return cached;
+            }
+        }
         
+        String completeSql;
+        try {
+            completeSql = record.renderCompleteSql();
+        } catch (Exception e) {
+            CharSequence params = record.getParameters() != null ? record.getParameters().getSource() : "";
+            LOG.error("Error generating complete SQL: " + record.getSql() + " with params: " + params, e);
+            return record.getSql() + " /* Error replacing parameters: " + params + " */";
+        }
+        synchronized (renderedSql) {
+            renderedSql.put(record, completeSql);
+        }
+        return completeSql;
+    }
+    
+    private void addEntry(LogEntry entry) {
         if (!isInitialized) {
             initializeProcessor();
         }
         
-        LogEntry entry;
-        if (log.startsWith("SQL:")) {
-            entry = new LogEntry("sql", log);
-        } else if (log.startsWith("Parameters:")) {
-            entry = new LogEntry("params", log);
-        } else if (log.startsWith("Complete SQL:")) {
-            entry = new LogEntry("complete", log);
-        } else if (log.startsWith("Time:")) {
-            entry = new LogEntry("time", log);
-        } else if (log.startsWith("----")) {
-            entry = new LogEntry("separator", log);
-        } else {
-            entry = new LogEntry("other", log);
-        }
-        
         // 检查是否启用处理
         if (enabled.get()) {
             // 已启用，正常处理
-            logQueue.offer(entry);
-            
-            // 添加到总日志列表，并限制大小
-            synchronized (allLogs) {
-                allLogs.add(entry);
-                // 限制最大日志数量
-                while (allLogs.size() > MAX_LOG_ENTRIES) {
-                    allLogs.remove(0);
-                }
-            }
+            publishEntry(entry);
         } else {
-            // 未启用，添加到挂起队列
-            pendingQueue.offer(entry);
-            
-            // 限制挂起队列大小，避免内存问题
-            while (pendingQueue.size() > MAX_LOG_ENTRIES) {
-                pendingQueue.poll();
-            }
+            // 未启用，先保存起来，超过上限时覆盖最旧的条目
+            pendingLogs.append(entry);
+        }
+    }
+    
+    /**
+     * 加入总日志列表并放入显示队列；先分配序号再入队，处理线程看到的条目一定已有序号
+     */
+    private void publishEntry(LogEntry entry) {
+        entry.sequence = allLogs.append(entry);
+        if (entry.record != null) {
+            entry.record.setSequence(entry.sequence);
+            statementIndex.add(entry.sequence, entry.record, allLogs.firstSequence());
         }
+        entry.queuedAt = System.nanoTime();
+        logQueue.offer(entry);
+        queuedCount.incrementAndGet();
+        requestFlush(FLUSH_INTERVAL_MS);
     }
     
     private void processQueuedLogs() {
-        // 如果未启用，则不处理任何内容
-        if (!enabled.get()) {
+        // 未启用或还没有显示窗格时日志留在队列中，启用或设置窗格时会重新安排刷新
+        if (!enabled.get() || textPane == null || textPane.getDocument() == null) {
+            flushScheduled.set(false);
             return;
         }
         
@@ -394,473 +606,885 @@ public final class MyBatisLogManager implements Disposable {
             return; // 如果已有线程在处理，直接返回
         }
         
+        boolean posted = false;
+        flushStartedAt = System.nanoTime();
         try {
-            if (textPane == null || textPane.getDocument() == null) return;
+            // 按测得的每条耗时计算本次在EDT预算内能处理多少条
+            int limit = (int) Math.min(MAX_FLUSH_ENTRIES,
+                    Math.max(MIN_FLUSH_ENTRIES, edtBudgetNanos / Math.max(1, edtNanosPerEntry)));
+            final List<LogEntry> batch = new ArrayList<>(Math.min(limit, Math.max(16, queuedCount.get())));
             
-            int processedCount = 0;
+            // 收集一批日志，先检查数量再取出，避免取出后被丢弃
             LogEntry entry;
-            final List<LogEntry> batch = new ArrayList<>(BATCH_PROCESS_SIZE);
-            
-            // 收集一批日志
-            while ((entry = logQueue.poll()) != null && processedCount < BATCH_PROCESS_SIZE) {
-                if (shouldShowLog(entry)) {
-                    batch.add(entry);
-                }
-                processedCount++;
+            while (batch.size() < limit && (entry = logQueue.poll()) != null) {
+                batch.add(entry);
             }
+            queuedCount.addAndGet(-batch.size());
             
-            // 如果有日志需要显示，在EDT线程中批量处理
+            // 在当前线程中按此刻的过滤条件生成样式文本，EDT中只做一次批量插入
             if (!batch.isEmpty()) {
-                final StyledDocument doc = textPane.getStyledDocument();
-                
-                // 检查是否需要清理过长的文档(每10秒检查一次)
-                long currentTime = System.currentTimeMillis();
-                if (LIMIT_OUTPUT && currentTime - lastCleanupTime > 10000) {
-                    cleanupTextPane(doc);
-                    lastCleanupTime = currentTime;
-                }
-                
+                lastFlushLagNanos = System.nanoTime() - batch.get(0).queuedAt;
+                final String filter = currentFilter;
+                final long shownUpTo = displayedUpTo;
+                final StyledRuns rendered = renderBatch(batch, filter, shownUpTo);
                 SwingUtilities.invokeLater(() -> {
+                    long started = System.nanoTime();
                     try {
-                        // 分组处理相关的SQL日志条目
-                        List<LogEntry> sortedBatch = groupAndSortLogEntries(batch);
+                        // 正在查看较早的语句时新日志只保存不显示，滚动到底部时再从存储中载入
+                        if (!followTail) {
+                            return;
+                        }
                         
-                        for (LogEntry logEntry : sortedBatch) {
-                            appendStyledLog(textPane, logEntry);
+                        // 生成之后过滤条件变化或文档已被过滤刷新替换时，按最新状态重新生成
+                        StyledRuns runs = filter.equals(currentFilter) && shownUpTo == displayedUpTo
+                                ? rendered : renderBatch(batch, currentFilter, displayedUpTo);
+                        if (runs.isEmpty()) {
+                            return;
                         }
                         
+                        // 过滤刷新可能已替换文档，这里重新获取
+                        StyledDocument current = textPane.getStyledDocument();
+                        appendToWindow(current, runs);
+                        
                         // 自动滚动到底部
-                        if (!sortedBatch.isEmpty()) {
-                            textPane.setCaretPosition(doc.getLength());
-                        }
+                        trimWindowFront(current);
+                        textPane.setCaretPosition(current.getLength());
+                        
+                        // 更新每条日志的EDT耗时估计（指数加权平均），偶发的GC停顿等异常值最多按两倍计入
+                        long estimate = edtNanosPerEntry;
+                        long perEntry = Math.max(1, (System.nanoTime() - started) / batch.size());
+                        edtNanosPerEntry = (estimate * 3 + Math.min(perEntry, estimate * 2)) / 4;
                     } catch (Exception e) {
                         LOG.error("Error batch processing logs", e);
+                    } finally {
+                        finishFlush();
                     }
                 });
+                posted = true;
             }
         } catch (Exception e) {
             LOG.error("Error during log processing", e);
         } finally {
             processingLock.unlock();
+            if (!posted) {
+                finishFlush();
+            }
         }
     }
     
     /**
-     * 分组并排序日志条目，确保相关SQL日志条目一起显示
+     * 等待显示的日志数量
      */
-    private List<LogEntry> groupAndSortLogEntries(List<LogEntry> batch) {
-        Map<String, List<LogEntry>> groups = new HashMap<>();
-        List<LogEntry> result = new ArrayList<>(batch.size());
-        List<LogEntry> separators = new ArrayList<>();
-        String currentGroup = null;
-        int groupCounter = 0;
-        
-        // 预处理步骤：按添加顺序分配组ID，确保不会打乱原始顺序
-        Map<String, Integer> typeGroups = new HashMap<>();
-        for (LogEntry entry : batch) {
-            if (entry.type.equals("separator")) {
-                separators.add(entry);
-                continue;
+    public int getQueueDepth() {
+        return Math.max(0, queuedCount.get());
+    }
+    
+    /**
+     * 显示延迟（毫秒）：队列非空时为最旧日志已等待的时间，否则为最近一次刷新时的等待时间
+     */
+    public long getDisplayLagMillis() {
+        LogEntry oldest = logQueue.peek();
+        long lag = oldest != null ? System.nanoTime() - oldest.queuedAt : lastFlushLagNanos;
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(0, lag));
+    }
+    
+    /**
+     * 显示刷新的统计摘要，用于状态栏提示
+     */
+    public String getFlushStatsSummary() {
+        long perEntryMicros = TimeUnit.NANOSECONDS.toMicros(edtNanosPerEntry);
+        String summary = "Queue " + getQueueDepth() + ", lag " + getDisplayLagMillis() + " ms, EDT "
+                + perEntryMicros + " µs/entry (budget " + TimeUnit.NANOSECONDS.toMillis(edtBudgetNanos) + " ms)";
+        long pageNanos = pageNanosPerEntry;
+        return pageNanos > 0 ? summary + ", paging " + TimeUnit.NANOSECONDS.toMicros(pageNanos) + " µs/entry" : summary;
+    }
+    
+    /**
+     * 筛选一批新到的条目并生成样式文本，跳过过滤刷新已经包含的条目
+     */
+    private StyledRuns renderBatch(List<LogEntry> batch, String filter, long shownUpTo) {
+        // 每次执行只有一个条目，按序号顺序显示即可，无需分组排序
+        StyledRuns runs = new StyledRuns();
+        for (LogEntry logEntry : batch) {
+            if (logEntry.sequence >= shownUpTo && shouldShowLog(logEntry, filter)) {
+                runs.mark(logEntry.sequence);
+                appendStyledLog(runs, logEntry);
             }
-            
-            if (entry.type.equals("sql")) {
-                // 新SQL开始了一个新组
-                currentGroup = "group_" + (++groupCounter);
-                typeGroups.put(currentGroup, 1);
-            } else if (currentGroup != null) {
-                // 增加当前组中的类型计数
-                typeGroups.put(currentGroup, typeGroups.getOrDefault(currentGroup, 0) + 1);
+        }
+        return runs;
+    }
+    
+    /**
+     * 生成一条日志的样式文本，不接触文档，可在任意线程调用
+     */
+    private void appendStyledLog(StyledRuns out, LogEntry entry) {
+        if (entry.record != null) {
+            appendStatement(out, entry.record);
+        } else {
+            out.add(entry.content, "default");
+            out.add("\n", "default");
+        }
+    }
+    
+    /**
+     * 复制记录上缓存的样式文本，没有时生成并缓存
+     * <p>
+     * 新日志在处理线程中生成，EDT中的翻页、定位和过滤刷新通常只需复制。
+     */
+    private void appendStatement(StyledRuns out, SqlStatementRecord record) {
+        out.append(renderedRuns(record));
+    }
+    
+    private StyledRuns renderedRuns(SqlStatementRecord record) {
+        StyledRuns rendered = record.getRendered();
+        if (rendered != null) {
+            return rendered;
+        }
+        boolean format = formatSql;
+        rendered = new StyledRuns();
+        renderStatement(rendered, record, format);
+        rendered.trimToSize();
+        synchronized (renderedRecords) {
+            // 其他线程可能已经生成；生成期间切换了排版方式时结果只用这一次，不缓存
+            StyledRuns existing = record.getRendered();
+            if (existing != null) {
+                return existing;
             }
-            
-            if (currentGroup != null) {
-                if (!groups.containsKey(currentGroup)) {
-                    groups.put(currentGroup, new ArrayList<>());
-                }
-                groups.get(currentGroup).add(entry);
-            } else {
-                // 没有组的条目直接添加到结果
-                result.add(entry);
+            if (format != formatSql) {
+                return rendered;
+            }
+            record.setRendered(rendered);
+            renderedRecords.addLast(record);
+            renderedChars += rendered.length();
+            while (renderedChars > RENDERED_RUNS_CACHE_CHARS && renderedRecords.size() > 1) {
+                SqlStatementRecord eldest = renderedRecords.pollFirst();
+                renderedChars -= eldest.getRendered().length();
+                eldest.setRendered(null);
             }
         }
+        return rendered;
+    }
+    
+    /**
+     * 一次SQL执行显示为 SQL、Parameters、Complete SQL、Time 和分隔线，全部由记录生成
+     * <p>
+     * 排版显示时较长的SQL和完整SQL从下一行开始分行显示，排版按模板缓存，每次只填入参数值；
+     * 复制的完整SQL仍是单行且不折叠 IN 列表。
+     */
+    private void renderStatement(StyledRuns out, SqlStatementRecord record, boolean format) {
+        SqlTemplate template = record.getTemplate();
+        boolean formatted = format && template.getSql().length() >= FORMAT_MIN_SQL_LENGTH;
+        out.add("SQL: ", "label-bold");
+        if (formatted) {
+            out.add("\n", "default");
+            FormattedSql sql = template.getFormatted();
+            appendSql(out, sql.getText(), sql.getTokens());
+        } else {
+            appendSql(out, template.getSql(), template.getTokens());
+        }
+        out.add("\n", "default");
         
-        // 按照SQL, Parameters, Complete SQL, Time的顺序排序每个组
-        for (Map.Entry<String, List<LogEntry>> groupEntry : groups.entrySet()) {
-            List<LogEntry> group = groupEntry.getValue();
-            
-            // 只有当组中有多个元素且包含多种类型时才需要排序
-            if (group.size() > 1 && typeGroups.getOrDefault(groupEntry.getKey(), 0) > 1) {
-                Collections.sort(group, (a, b) -> {
-                    int aOrder = getTypeOrder(a.type);
-                    int bOrder = getTypeOrder(b.type);
-                    return Integer.compare(aOrder, bOrder);
-                });
-            }
+        out.add("Parameters: ", "param-bold");
+        if (record.hasParameters()) {
+            appendParameters(out, record.getParameters());
+            out.add("\n", "default");
             
-            result.addAll(group);
-            
-            // 在每个完整的组后添加一个分隔符，除非这是最后一个组
-            if (isCompleteGroup(group) && !groupEntry.getKey().equals("group_" + groupCounter)) {
-                LogEntry separator = new LogEntry("separator", "----------------------------------------");
-                result.add(separator);
+            // 由参数直接生成的完整SQL不含类型标记，无需再用正则清理
+            out.add("Complete SQL: ", "label-bold");
+            FormattedSql completeSql = formatted ? formatCompleteSql(record) : null;
+            if (completeSql != null) {
+                out.add("\n", "default");
+                appendSql(out, completeSql.getText(), completeSql.getTokens());
+            } else {
+                out.add(getCompleteSql(record), "complete-sql-bold");
             }
+        } else {
+            // 超时仍未收到参数行的孤立SQL，不生成完整SQL
+            out.add("(SQL without parameters)", "param");
         }
+        out.add("\n", "default");
         
-        // 如果还有剩余的分隔符并且不是在每个组后已添加，则添加它们
-        if (!separators.isEmpty() && !result.isEmpty() && 
-            !result.get(result.size() - 1).type.equals("separator")) {
-            result.addAll(separators);
+        out.add("Time: ", "time-bold");
+        StringBuilder time = new StringBuilder(48);
+        if (record.getLatencyMillis() >= 0) {
+            time.append(record.getLatencyMillis()).append("ms");
+        } else {
+            time.append("unknown");
+        }
+        if (record.getRows() >= 0) {
+            time.append(", Rows: ").append(record.getRows());
         }
+        time.append(" (").append(TIME_FORMATTER.format(Instant.ofEpochMilli(record.getStartMillis()))).append(')');
+        out.add(time.toString(), "time");
+        out.add("\n", "default");
         
-        return result;
+        out.add(SEPARATOR, "separator");
+        out.add("\n", "default");
     }
     
     /**
-     * 检查一个组是否包含完整的SQL执行信息
+     * 按排版填入参数值，失败时返回null，改为显示单行的完整SQL
      */
-    private boolean isCompleteGroup(List<LogEntry> group) {
-        boolean hasSql = false;
-        boolean hasParams = false;
-        boolean hasComplete = false;
-        
-        for (LogEntry entry : group) {
-            if (entry.type.equals("sql")) hasSql = true;
-            else if (entry.type.equals("params")) hasParams = true;
-            else if (entry.type.equals("complete")) hasComplete = true;
+    @Nullable
+    private static FormattedSql formatCompleteSql(SqlStatementRecord record) {
+        try {
+            return record.getTemplate().format(record.getParameters());
+        } catch (Exception e) {
+            LOG.warn("Error formatting complete SQL: " + record.getSql(), e);
+            return null;
         }
-        
-        return hasSql && hasParams && hasComplete;
+    }
+
+    /**
+     * 按模板中缓存的词法片段为SQL着色，词法分析每个模板只做一次，这里只按片段复制文本
+     */
+    private static void appendSql(StyledRuns out, String sql, SqlTokens tokens) {
+        String style = "default";
+        int offset = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            // 片段之间的空白沿用前一个片段的样式，使相邻的同样式片段合并，减少插入文档的元素数量
+            out.add(sql, offset, tokens.start(i), style);
+            style = styleOf(tokens.kind(i));
+            out.add(sql, tokens.start(i), tokens.end(i), style);
+            offset = tokens.end(i);
+        }
+        out.add(sql, offset, sql.length(), style);
     }
     
     /**
-     * 获取日志类型的排序优先级
+     * 关键字、表名、函数名和常量分别着色；字段、别名、运算符和标点使用同一样式，
+     * 它们通常交替出现，分别着色会使文本元素数量成倍增加，而插入和裁剪文档的耗时与元素数量成正比
      */
-    private int getTypeOrder(String type) {
-        switch (type) {
-            case "sql": return 1;
-            case "params": return 2;
-            case "complete": return 3;
-            case "time": return 4;
-            case "separator": return 5;
-            default: return 6;
+    private static String styleOf(SqlTokens.Kind kind) {
+        switch (kind) {
+            case KEYWORD:
+                return "keyword-bold";
+            case TABLE:
+                return "table-bold";
+            case FUNCTION:
+                return "function";
+            case STRING:
+                return "string";
+            case NUMBER:
+                return "number";
+            case PLACEHOLDER:
+                return "param-bold";
+            case COMMENT:
+                return "separator";
+            default:
+                return "field";
         }
     }
     
-    private void cleanupTextPane(StyledDocument doc) {
-        if (doc.getLength() > MAX_DOCUMENT_LENGTH) {
-            try {
-                // 删除文档开头部分，保留后面的内容
-                int charsToRemove = doc.getLength() - (MAX_DOCUMENT_LENGTH / 2);
-                if (charsToRemove > 0) {
-                    SwingUtilities.invokeLater(() -> {
-                        try {
-                            doc.remove(0, charsToRemove);
-                            LOG.info("Cleaned up text pane, removed " + charsToRemove + " characters");
-                        } catch (BadLocationException e) {
-                            LOG.error("Error cleaning up text pane", e);
-                        }
-                    });
-                }
-            } catch (Exception e) {
-                LOG.error("Error evaluating document length", e);
+    /**
+     * 参数列表，文本与 {@link SqlParameters#format()} 相同，参数值按类型着色，每个参数三个片段
+     */
+    private static void appendParameters(StyledRuns out, SqlParameters parameters) {
+        out.add("[", "param");
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) {
+                out.add(", ", "param");
+            }
+            out.add(Integer.toString(i + 1), "param");
+            out.add(": ", "param");
+            String valueStyle = parameters.isNull(i) ? "null" : parameters.isNumber(i) ? "number" : "string";
+            out.add(parameters.getSource(), parameters.getValueStart(i), parameters.getValueEnd(i), valueStyle);
+            out.add(" (" + parameters.displayType(i) + ")", "type");
+        }
+        out.add("]", "param");
+    }
+    
+    public void filterLogs(String filter) {
+        filterLogs(filter, null);
+    }
+
+    /**
+     * 在后台线程中按过滤条件构建新文档，完成后在EDT中一次性替换显示内容
+     * <p>
+     * 新文档只包含最新的一个窗口内的语句，更早的语句在滚动到顶部时再载入。
+     * 新的过滤请求会取消尚未完成的旧请求，旧请求的结果不会被应用。
+     * @param onApplied 结果应用后在EDT中回调，参数为匹配的SQL执行数量（过滤条件为空时为显示的语句数量）
+     */
+    public void filterLogs(String filter, @Nullable IntConsumer onApplied) {
+        String normalized = filter == null ? "" : filter.trim();
+        long generation = filterGeneration.incrementAndGet();
+        synchronized (filterGeneration) {
+            if (pendingFilter != null) {
+                pendingFilter.cancel(true);
             }
+            pendingFilter = filterExecutor.submit(() -> evaluateFilter(normalized, generation, onApplied));
         }
     }
 
-    private void processLogs() {
-        // 该方法保留用于兼容性，实际处理由调度任务完成
+    private boolean isStaleFilter(long generation) {
+        return generation != filterGeneration.get() || Thread.currentThread().isInterrupted();
     }
 
-    private void appendStyledLog(JTextPane textPane, LogEntry entry) {
+    /**
+     * 后台线程：把最新一个窗口内的匹配语句写入一个尚未显示的新文档
+     */
+    private void evaluateFilter(String filter, long generation, @Nullable IntConsumer onApplied) {
         try {
-            StyledDocument doc = textPane.getStyledDocument();
-            
-            switch (entry.type) {
-                case "sql":
-                    appendSql(doc, entry.content);
-                    break;
-                case "params":
-                    appendParameters(doc, entry.content);
-                    break;
-                case "complete":
-                    appendCompleteSql(doc, entry.content);
-                    break;
-                case "time":
-                    appendTime(doc, entry.content);
-                    break;
-                case "separator":
-                    appendSeparator(doc, entry.content);
-                    break;
-                default:
-                    appendDefault(doc, entry.content);
-                    break;
+            long end = allLogs.nextSequence();
+            long[] matches = null;
+            long[] heads;
+            int matchCount;
+            if (filter.isEmpty()) {
+                heads = sequencesBefore(end, VIEW_WINDOW_STATEMENTS);
+                matchCount = heads.length;
+            } else {
+                matches = statementIndex.query(filter.toLowerCase(), allLogs.firstSequence(), this::recordAt);
+                // 查询时可能已有新记录加入索引，只保留构建范围内的
+                int count = lowerBound(matches, end);
+                matches = count == matches.length ? matches : Arrays.copyOf(matches, count);
+                heads = matchesBefore(matches, end, VIEW_WINDOW_STATEMENTS);
+                matchCount = matches.length;
             }
-            
-            // 添加换行
-            doc.insertString(doc.getLength(), "\n", doc.getStyle("default"));
-        } catch (BadLocationException e) {
-            LOG.error("Error appending styled log", e);
+
+            StatementWindow built = new StatementWindow();
+            StyledRuns runs = new StyledRuns();
+            for (int i = 0; i < heads.length; i++) {
+                if (i % FILTER_CANCEL_CHECK_INTERVAL == 0 && isStaleFilter(generation)) {
+                    return;
+                }
+                built.addLast(heads[i], runs.length());
+                appendEntry(runs, heads[i]);
+            }
+
+            if (isStaleFilter(generation)) {
+                return;
+            }
+            LogDocument doc = new LogDocument();
+            installStyles(doc);
+            runs.insertInto(doc, 0);
+            long[] result = matches;
+            SwingUtilities.invokeLater(() -> applyFilteredDocument(filter, generation, doc, built, result, end, matchCount, onApplied));
+        } catch (Exception e) {
+            LOG.error("Error filtering logs with: " + filter, e);
         }
     }
-    
-    private void appendSql(StyledDocument doc, String content) throws BadLocationException {
-        // 提取前缀和实际SQL
-        int colonIndex = content.indexOf(":");
-        String prefix = content.substring(0, colonIndex + 1);
-        String sql = content.substring(colonIndex + 1).trim();
-        
-        // 添加前缀（使用标准标签颜色）
-        Style labelStyle = doc.getStyle("label-bold");
-        doc.insertString(doc.getLength(), prefix + " ", labelStyle);
-        
-        // 使用默认颜色添加SQL
-        doc.insertString(doc.getLength(), sql, doc.getStyle("default"));
+
+    /**
+     * EDT：补上构建期间新到的条目后替换文档
+     */
+    private void applyFilteredDocument(String filter, long generation, StyledDocument doc, StatementWindow built,
+                                       @Nullable long[] matches, long builtUpTo, int matchCount,
+                                       @Nullable IntConsumer onApplied) {
+        if (generation != filterGeneration.get() || textPane == null) {
+            return;
+        }
+        currentFilter = filter;
+        filterMatches = matches;
+        filterMatchesEnd = builtUpTo;
+        window = built;
+        followTail = true;
+        long next = allLogs.nextSequence();
+        StyledRuns tail = new StyledRuns();
+        for (long sequence = builtUpTo; sequence < next; sequence++) {
+            LogEntry entry = allLogs.get(sequence);
+            if (entry != null && shouldShowLog(entry)) {
+                tail.mark(sequence);
+                appendStyledLog(tail, entry);
+            }
+        }
+        try {
+            appendToWindow(doc, tail);
+        } catch (BadLocationException e) {
+            LOG.error("Error appending logs to filtered document", e);
+        }
+        trimWindowFront(doc);
+        displayedUpTo = next;
+        textPane.setDocument(doc);
+        textPane.setCaretPosition(doc.getLength());
+        if (onApplied != null) {
+            onApplied.accept(matchCount);
+        }
     }
-    
-    private void appendParameters(StyledDocument doc, String content) throws BadLocationException {
-        // 提取前缀和参数部分
-        int colonIndex = content.indexOf(":");
-        String prefix = content.substring(0, colonIndex + 1);
-        String params = content.substring(colonIndex + 1).trim();
-        
-        // 添加前缀（使用紫色粗体）
-        doc.insertString(doc.getLength(), prefix + " ", doc.getStyle("param-bold"));
-        
-        // 添加参数内容（也使用紫色）
-        doc.insertString(doc.getLength(), params, doc.getStyle("param"));
+
+    /**
+     * 显示序号为 {@code sequence} 的条目，已被淘汰时什么也不做
+     */
+    private void appendEntry(StyledRuns out, long sequence) {
+        LogEntry entry = allLogs.get(sequence);
+        if (entry != null) {
+            appendStyledLog(out, entry);
+        }
     }
-    
-    private void appendCompleteSql(StyledDocument doc, String content) throws BadLocationException {
-        // 提取前缀和完整SQL
-        int colonIndex = content.indexOf(":");
-        String prefix = content.substring(0, colonIndex + 1);
-        String sql = content.substring(colonIndex + 1).trim();
-        
-        // 从SQL中移除参数类型标记
-        sql = removeParamTypes(sql);
-        
-        // 添加前缀（使用粗体和背景色）
-        Style labelStyle = doc.getStyle("label-bold");
-        doc.insertString(doc.getLength(), prefix + " ", labelStyle);
-        
-        // 添加完整SQL(使用绿色)
-        doc.insertString(doc.getLength(), sql, doc.getStyle("complete-sql-bold"));
+
+    /**
+     * 序号为 {@code sequence} 的SQL执行记录，已被淘汰或是普通消息时返回null
+     */
+    @Nullable
+    private SqlStatementRecord recordAt(long sequence) {
+        LogEntry entry = allLogs.get(sequence);
+        return entry != null ? entry.record : null;
     }
-    
-    private void appendTime(StyledDocument doc, String content) throws BadLocationException {
-        // 添加前缀
-        int colonIndex = content.indexOf(":");
-        String prefix = content.substring(0, colonIndex + 1);
-        String time = content.substring(colonIndex + 1).trim();
-        
-        // 使用黄色显示Time:标签
-        doc.insertString(doc.getLength(), prefix + " ", doc.getStyle("time-bold"));
-        
-        // 使用黄色显示时间值
-        doc.insertString(doc.getLength(), time, doc.getStyle("time"));
+
+    /**
+     * EDT：把一批新到的条目一次追加到文档末尾，每个条目在窗口中是一条语句
+     */
+    private void appendToWindow(StyledDocument doc, StyledRuns runs) throws BadLocationException {
+        int base = doc.getLength();
+        for (int i = 0; i < runs.markCount(); i++) {
+            window.addLast(runs.markSequence(i), base + runs.markOffset(i));
+        }
+        runs.insertInto(doc, base);
     }
-    
-    private void appendSeparator(StyledDocument doc, String content) throws BadLocationException {
-        doc.insertString(doc.getLength(), content, doc.getStyle("separator"));
+
+    /**
+     * EDT：语句数量或文档长度超过上限时，从开头整条删除最旧的语句
+     */
+    private void trimWindowFront(StyledDocument doc) {
+        if (!LIMIT_OUTPUT || window.size() <= 1) {
+            return;
+        }
+        int length = doc.getLength();
+        int count = Math.max(0, window.size() - VIEW_WINDOW_STATEMENTS);
+        while (count < window.size() - 1 && length - window.startOffset(count) > MAX_DOCUMENT_LENGTH) {
+            count++;
+        }
+        if (count == 0) {
+            return;
+        }
+        try {
+            int removed = window.removeFirst(count, length);
+            doc.remove(0, removed);
+        } catch (BadLocationException e) {
+            LOG.error("Error trimming log window", e);
+        }
     }
-    
-    private void appendDefault(StyledDocument doc, String content) throws BadLocationException {
-        doc.insertString(doc.getLength(), content, doc.getStyle("default"));
+
+    /**
+     * EDT：滚动条到达顶部时载入更早的语句，到达底部时载入更新的语句
+     */
+    private void onScroll(AdjustmentEvent event) {
+        JScrollBar bar = verticalScrollBar;
+        if (bar == null || textPane == null) {
+            return;
+        }
+        // 文档增长、裁剪时滚动条的范围也会变化并触发事件，只有位置变化才算滚动
+        boolean moved = bar.getValue() != lastScrollValue;
+        lastScrollValue = bar.getValue();
+        if (!moved || adjustingViewport || event.getValueIsAdjusting() || window.isEmpty()) {
+            return;
+        }
+        // 内容不足一屏时不翻页
+        if (bar.getMaximum() - bar.getMinimum() <= bar.getVisibleAmount()) {
+            return;
+        }
+        if (bar.getValue() <= bar.getMinimum()) {
+            loadOlderStatements();
+        } else if (!followTail && bar.getValue() + bar.getVisibleAmount() >= bar.getMaximum()) {
+            loadNewerStatements();
+        }
     }
-    
-    private void highlightSql(StyledDocument doc, String sql) throws BadLocationException {
-        int startPos = doc.getLength();
-        doc.insertString(startPos, sql, doc.getStyle("default"));
-        
-        // 高亮SQL关键字（使用粗体）
-        highlightPattern(doc, sql, startPos, SQL_KEYWORDS, "keyword-bold");
-        
-        // 高亮表名（使用粗体）
-        highlightPattern(doc, sql, startPos, SQL_TABLE_ALIAS, "table-bold");
-        
-        // 高亮字段名
-        highlightFields(doc, sql, startPos);
-        
-        // 高亮操作符
-        highlightPattern(doc, sql, startPos, SQL_OPERATORS, "operator");
-        
-        // 高亮字符串
-        highlightPattern(doc, sql, startPos, SQL_QUOTES, "string");
-        
-        // 高亮数字
-        highlightPattern(doc, sql, startPos, SQL_NUMBERS, "number");
+
+    /**
+     * EDT：在文档开头插入一页更早的语句，超出窗口的最新语句从末尾删除，此后不再跟随最新日志
+     */
+    private void loadOlderStatements() {
+        long[] heads = headsBefore(window.firstHead(), VIEW_PAGE_STATEMENTS);
+        if (heads.length == 0) {
+            return;
+        }
+        long started = System.nanoTime();
+        StyledDocument doc = textPane.getStyledDocument();
+        long end = window.firstHead();
+        StyledRuns page = new StyledRuns();
+        int[] offsets = new int[heads.length];
+        for (int i = 0; i < heads.length; i++) {
+            offsets[i] = page.length();
+            appendEntry(page, heads[i]);
+        }
+
+        int inserted = page.length();
+        keepViewport(inserted, () -> {
+            page.insertInto(doc, 0);
+            window.prepend(heads, offsets, heads.length, inserted);
+            if (window.size() > VIEW_WINDOW_STATEMENTS) {
+                int start = window.removeLast(window.size() - VIEW_WINDOW_STATEMENTS);
+                doc.remove(start, doc.getLength() - start);
+                followTail = false;
+            }
+        });
+        pageNanosPerEntry = (System.nanoTime() - started) / heads.length;
+        prerender(headsBefore(window.firstHead(), VIEW_PAGE_STATEMENTS));
     }
 
     /**
-     * 高亮显示字段名
+     * 在处理线程中为接下来可能载入的语句生成样式文本，继续翻页时EDT中只需复制
      */
-    private void highlightFields(StyledDocument doc, String sql, int startPos) {
-        // 高亮字段名
+    private void prerender(long[] heads) {
+        ScheduledExecutorService processor = logProcessor;
+        if (processor == null || heads.length == 0) {
+            return;
+        }
         try {
-            // SELECT 子句中的字段名
-            Pattern selectFields = Pattern.compile("(?<=SELECT)\\s+(.+?)(?=\\s+FROM)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-            Matcher selectMatcher = selectFields.matcher(sql);
-            if (selectMatcher.find()) {
-                String fieldsStr = selectMatcher.group(1);
-                // 分割字段（考虑函数和子查询）
-                String[] fields = fieldsStr.split("\\s*,\\s*");
-                for (String field : fields) {
-                    // 提取别名和实际字段名
-                    Pattern fieldPattern = Pattern.compile("\\b([a-zA-Z0-9_\\.]+)\\b(?!\\s*\\()", Pattern.CASE_INSENSITIVE);
-                    Matcher fieldMatcher = fieldPattern.matcher(field);
-                    while (fieldMatcher.find()) {
-                        String fieldName = fieldMatcher.group(1);
-                        if (!isKeyword(fieldName)) {  // 避免高亮SQL关键字
-                            int fieldStart = startPos + selectMatcher.start(1) + field.indexOf(fieldName, 0);
-                            if (fieldStart >= startPos && fieldStart < doc.getLength()) {
-                                doc.setCharacterAttributes(fieldStart, fieldName.length(), 
-                                        doc.getStyle("field-bold"), false);
-                            }
-                        }
+            processor.execute(() -> {
+                for (long head : heads) {
+                    LogEntry entry = allLogs.get(head);
+                    if (entry != null && entry.record != null) {
+                        renderedRuns(entry.record);
                     }
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            // 已释放
+        }
+    }
+
+    /**
+     * EDT：在文档末尾追加一页更新的语句，已到最新时恢复跟随最新日志
+     */
+    private void loadNewerStatements() {
+        StyledDocument doc = textPane.getStyledDocument();
+        long end = allLogs.nextSequence();
+        // 多取一条：存在下一条语句说明这一页的最后一条语句已经完整
+        long[] heads = headsAfter(window.lastHead(), end, VIEW_PAGE_STATEMENTS + 1);
+        boolean hasMore = heads.length > VIEW_PAGE_STATEMENTS;
+        int count = hasMore ? VIEW_PAGE_STATEMENTS : heads.length;
+        int trim = Math.max(0, Math.min(window.size() + count - VIEW_WINDOW_STATEMENTS, window.size() - 1));
+        int removed = trim > 0 ? window.startOffset(trim) : 0;
+        long started = System.nanoTime();
+        StyledRuns page = new StyledRuns();
+        int base = doc.getLength();
+        for (int i = 0; i < count; i++) {
+            window.addLast(heads[i], base + page.length());
+            appendEntry(page, heads[i]);
+        }
+        keepViewport(-removed, () -> {
+            page.insertInto(doc, base);
+            if (trim > 0) {
+                doc.remove(0, window.removeFirst(trim, doc.getLength()));
             }
-            
-            // WHERE, SET, VALUES 等子句中的字段名
-            Pattern whereFields = Pattern.compile("\\b([a-zA-Z0-9_\\.]+)\\s*(=|<>|!=|>|<|>=|<=|LIKE|IN|IS)", Pattern.CASE_INSENSITIVE);
-            Matcher whereMatcher = whereFields.matcher(sql);
-            while (whereMatcher.find()) {
-                String fieldName = whereMatcher.group(1);
-                if (!isKeyword(fieldName) && !fieldName.matches(".*\\d+.*")) {
-                    int fieldStart = startPos + whereMatcher.start(1);
-                    if (fieldStart >= startPos && fieldStart < doc.getLength()) {
-                        doc.setCharacterAttributes(fieldStart, fieldName.length(), 
-                                doc.getStyle("field-bold"), false);
-                    }
-                }
+        });
+        if (count > 0) {
+            pageNanosPerEntry = (System.nanoTime() - started) / count;
+        }
+        if (!hasMore) {
+            // 之后到达的日志由处理线程继续追加
+            followTail = true;
+            displayedUpTo = end;
+        }
+    }
+
+    /**
+     * 修改文档后让原来位于视口顶部的文字仍停留在原处
+     * @param offsetDelta 修改使视口顶部文字在文档中的偏移变化量
+     */
+    private void keepViewport(int offsetDelta, DocumentChange change) {
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, textPane);
+        adjustingViewport = true;
+        try {
+            if (viewport == null) {
+                change.apply();
+                return;
             }
-        } catch (Exception e) {
-            LOG.error("Error highlighting fields", e);
+            Point position = viewport.getViewPosition();
+            int anchor = textPane.viewToModel2D(position);
+            Rectangle2D before = textPane.modelToView2D(anchor);
+            double gap = before != null ? position.y - before.getY() : 0;
+            change.apply();
+            // 立即按新内容布局，再定位到原来的文字
+            viewport.getParent().validate();
+            int target = Math.max(0, Math.min(anchor + offsetDelta, textPane.getDocument().getLength()));
+            Rectangle2D after = textPane.modelToView2D(target);
+            if (after != null) {
+                viewport.setViewPosition(new Point(position.x, Math.max(0, (int) (after.getY() + gap))));
+            }
+        } catch (BadLocationException e) {
+            LOG.error("Error updating log window", e);
+        } finally {
+            adjustingViewport = false;
         }
     }
-    
+
+    private interface DocumentChange {
+        void apply() throws BadLocationException;
+    }
+
     /**
-     * 检查字段名是否为SQL关键字
+     * EDT：当前过滤条件下最新一条SQL的完整SQL，不受窗口当前显示位置影响
+     * @return 完整SQL，没有SQL时返回null
      */
-    private boolean isKeyword(String word) {
-        String uppercaseWord = word.toUpperCase();
-        return uppercaseWord.equals("SELECT") || uppercaseWord.equals("FROM") || 
-               uppercaseWord.equals("WHERE") || uppercaseWord.equals("AND") || 
-               uppercaseWord.equals("OR") || uppercaseWord.equals("JOIN") || 
-               uppercaseWord.equals("GROUP") || uppercaseWord.equals("ORDER") || 
-               uppercaseWord.equals("BY") || uppercaseWord.equals("HAVING") ||
-               uppercaseWord.equals("LIMIT") || uppercaseWord.equals("OFFSET") ||
-               uppercaseWord.equals("COUNT") || uppercaseWord.equals("SUM") ||
-               uppercaseWord.equals("MIN") || uppercaseWord.equals("MAX") ||
-               uppercaseWord.equals("AVG");
+    @Nullable
+    public String getLatestCompleteSql() {
+        long before = allLogs.nextSequence();
+        while (true) {
+            long[] heads = headsBefore(before, VIEW_PAGE_STATEMENTS);
+            if (heads.length == 0) {
+                return null;
+            }
+            for (int i = heads.length - 1; i >= 0; i--) {
+                String sql = completeSqlOf(heads[i]);
+                if (sql != null) {
+                    return sql;
+                }
+            }
+            before = heads[0];
+        }
     }
-    
-    private void highlightParameters(StyledDocument doc, String params) throws BadLocationException {
-        int startPos = doc.getLength();
-        doc.insertString(startPos, params, doc.getStyle("default"));
-        
-        // 高亮参数索引 - 使用红褐色
-        highlightPattern(doc, params, startPos, PARAM_INDEX, "param-name-bold");
-        
-        // 高亮参数类型
-        highlightPattern(doc, params, startPos, PARAM_TYPE, "type");
-        
-        // 高亮字符串
-        highlightPattern(doc, params, startPos, SQL_QUOTES, "string");
-        
-        // 高亮数字
-        highlightPattern(doc, params, startPos, SQL_NUMBERS, "number");
-        
-        // 高亮NULL
-        highlightPattern(doc, params, startPos, PARAM_NULL, "null");
+
+    /**
+     * EDT：文档偏移 {@code offset} 所在语句的完整SQL，按窗口中的语句偏移二分查找
+     * @return 完整SQL，偏移不在SQL语句中时返回null
+     */
+    @Nullable
+    public String getCompleteSqlAt(int offset) {
+        int index = window.indexAtOffset(offset);
+        return index >= 0 ? completeSqlOf(window.head(index)) : null;
     }
-    
-    private void highlightPattern(StyledDocument doc, String text, int startPos, Pattern pattern, String styleName) {
-        Matcher matcher = pattern.matcher(text);
-        Style style = doc.getStyle(styleName);
-        
-        while (matcher.find()) {
-            int matchStart = startPos + matcher.start();
-            int matchEnd = startPos + matcher.end();
-            
-            try {
-                doc.setCharacterAttributes(matchStart, matchEnd - matchStart, style, false);
-            } catch (Exception e) {
-                LOG.error("Error highlighting pattern: " + pattern.pattern(), e);
+
+    /**
+     * EDT：把光标移到光标所在语句的下一条或上一条语句开头，需要时载入窗口之外的语句
+     * @param slowOnly 只在 {@link SlowQueryTracker} 判定为慢SQL的语句之间跳转
+     * @return 是否找到目标语句
+     */
+    public boolean navigateStatement(boolean forward, boolean slowOnly) {
+        if (textPane == null || window.isEmpty()) {
+            return false;
+        }
+        int index = window.indexAtOffset(textPane.getCaretPosition());
+        long target = -1;
+        // 先在窗口内查找，每条语句的偏移已知
+        for (int i = forward ? index + 1 : index - 1; i >= 0 && i < window.size(); i += forward ? 1 : -1) {
+            if (!slowOnly || isSlowStatement(window.head(i))) {
+                target = window.head(i);
+                break;
+            }
+        }
+        // 窗口中没有时按序号在存储中继续查找，不生成文本
+        if (target < 0) {
+            long end = allLogs.nextSequence();
+            long from = forward ? window.lastHead() : window.firstHead();
+            while (target < 0) {
+                long[] heads = forward ? headsAfter(from, end, VIEW_PAGE_STATEMENTS) : headsBefore(from, VIEW_PAGE_STATEMENTS);
+                if (heads.length == 0) {
+                    return false;
+                }
+                for (int i = forward ? 0 : heads.length - 1; i >= 0 && i < heads.length; i += forward ? 1 : -1) {
+                    if (!slowOnly || isSlowStatement(heads[i])) {
+                        target = heads[i];
+                        break;
+                    }
+                }
+                from = forward ? heads[heads.length - 1] : heads[0];
             }
         }
+        return moveToStatement(target);
     }
 
-    public void filterLogs(String filter) {
-        currentFilter = filter;
-        refreshDisplay();
+    /**
+     * EDT：显示序号为 {@code sequence} 的语句并把光标移到该语句开头，供 "Slow Queries" 等列表跳转
+     *
+     * @return 语句已被淘汰或不符合当前过滤条件时返回 false
+     */
+    public boolean revealStatement(long sequence) {
+        if (textPane == null) {
+            return false;
+        }
+        LogEntry entry = allLogs.get(sequence);
+        if (entry == null || !shouldShowLog(entry)) {
+            return false;
+        }
+        return moveToStatement(sequence);
     }
 
     /**
-     * 刷新所有日志显示
-     * 在字体大小更改或过滤条件变化时调用
+     * EDT：窗口中没有该语句时先把窗口移到它附近，再滚动到该语句
      */
-    public void refreshDisplay() {
-        if (textPane != null) {
-            StyledDocument doc = textPane.getStyledDocument();
+    private boolean moveToStatement(long sequence) {
+        int targetIndex = window.indexOfHead(sequence);
+        if (targetIndex < 0) {
+            showWindowAround(sequence);
+            targetIndex = window.indexOfHead(sequence);
+            if (targetIndex < 0) {
+                return false;
+            }
+        }
+        // 离开最后一条语句后不再把新日志追加到末尾，滚动到底部时再载入
+        if (targetIndex < window.size() - 1) {
+            followTail = false;
+        }
+        scrollToStatement(targetIndex);
+        return true;
+    }
+
+    /**
+     * EDT：重建窗口，使其包含序号为 {@code head} 的语句及其前后各若干条语句
+     */
+    private void showWindowAround(long head) {
+        StyledDocument doc = textPane.getStyledDocument();
+        long end = allLogs.nextSequence();
+        long[] before = headsBefore(head, VIEW_PAGE_STATEMENTS);
+        int afterLimit = VIEW_WINDOW_STATEMENTS - before.length - 1;
+        // 多取一条：取不满说明窗口已到最新，之后继续跟随新日志
+        long[] after = headsAfter(head, end, afterLimit + 1);
+        boolean atEnd = after.length <= afterLimit;
+        try {
+            StyledRuns runs = new StyledRuns();
+            window.clear();
+            for (long sequence : before) {
+                window.addLast(sequence, runs.length());
+                appendEntry(runs, sequence);
+            }
+            window.addLast(head, runs.length());
+            appendEntry(runs, head);
+            for (int i = 0; i < Math.min(after.length, afterLimit); i++) {
+                window.addLast(after[i], runs.length());
+                appendEntry(runs, after[i]);
+            }
+            adjustingViewport = true;
             try {
                 doc.remove(0, doc.getLength());
-                
-                for (LogEntry entry : allLogs) {
-                    if (shouldShowLog(entry)) {
-                        appendStyledLog(textPane, entry);
-                    }
+                runs.insertInto(doc, 0);
+            } finally {
+                adjustingViewport = false;
+            }
+            followTail = atEnd;
+            if (atEnd) {
+                displayedUpTo = end;
+            }
+        } catch (BadLocationException e) {
+            LOG.error("Error moving log window", e);
+        }
+    }
+
+    /**
+     * EDT：光标移到第 {@code index} 条语句开头，并把该语句滚动到视口顶部
+     */
+    private void scrollToStatement(int index) {
+        int offset = window.startOffset(index);
+        JViewport viewport = (JViewport) SwingUtilities.getAncestorOfClass(JViewport.class, textPane);
+        adjustingViewport = true;
+        try {
+            textPane.setCaretPosition(offset);
+            if (viewport != null) {
+                viewport.getParent().validate();
+                Rectangle2D bounds = textPane.modelToView2D(offset);
+                if (bounds != null) {
+                    int maxY = Math.max(0, textPane.getHeight() - viewport.getExtentSize().height);
+                    viewport.setViewPosition(new Point(viewport.getViewPosition().x, Math.min(maxY, (int) bounds.getY())));
                 }
-            } catch (BadLocationException e) {
-                LOG.error("Error refreshing logs display", e);
             }
+        } catch (BadLocationException e) {
+            LOG.error("Error scrolling to statement", e);
+        } finally {
+            adjustingViewport = false;
         }
     }
 
-    private boolean shouldShowLog(LogEntry entry) {
-        if (currentFilter.isEmpty()) return true;
+    /**
+     * 序号为 {@code sequence} 的SQL执行的完整SQL，没有参数时取SQL本身
+     */
+    @Nullable
+    private String completeSqlOf(long sequence) {
+        LogEntry entry = allLogs.get(sequence);
+        if (entry == null || entry.record == null) {
+            return null;
+        }
+        return entry.record.hasParameters() ? getCompleteSql(entry.record) : entry.record.getSql();
+    }
 
-        // 首先尝试查找表名
-        if (entry.type.equals("sql") || entry.type.equals("complete")) {
-            // 尝试从SQL提取表名
-            String content = entry.content.toLowerCase();
-            String searchText = currentFilter.toLowerCase();
-            
-            // 检查直接匹配
-            if (content.contains(searchText)) {
-                return true;
+    /**
+     * 序号为 {@code sequence} 的SQL执行耗时是否达到所属 Mapper 的慢SQL阈值
+     */
+    private boolean isSlowStatement(long sequence) {
+        LogEntry entry = allLogs.get(sequence);
+        return entry != null && entry.record != null && SlowQueryTracker.getInstance(project).isSlow(entry.record);
+    }
+
+    /**
+     * EDT：当前过滤条件下序号小于 {@code before} 的最后 {@code limit} 条语句
+     */
+    private long[] headsBefore(long before, int limit) {
+        if (filterMatches == null) {
+            return sequencesBefore(before, limit);
+        }
+        // 过滤之后到达的记录不在匹配结果中，先从后向前逐条判断
+        long[] recent = new long[limit];
+        int count = 0;
+        long first = Math.max(filterMatchesEnd, allLogs.firstSequence());
+        for (long sequence = before - 1; sequence >= first && count < limit; sequence--) {
+            LogEntry entry = allLogs.get(sequence);
+            if (entry != null && shouldShowLog(entry)) {
+                recent[count++] = sequence;
             }
-            
-            // 提取 FROM, JOIN, INTO, UPDATE 等子句后的表名
-            Pattern tablePattern = Pattern.compile("\\b(from|join|update|into)\\s+([a-z0-9_\\.]+)", Pattern.CASE_INSENSITIVE);
-            Matcher matcher = tablePattern.matcher(content);
-            
-            while (matcher.find()) {
-                String tableName = matcher.group(2).trim();
-                if (tableName.contains(searchText)) {
-                    return true;
-                }
+        }
+        long[] older = matchesBefore(filterMatches, Math.min(before, filterMatchesEnd), limit - count);
+        long[] heads = Arrays.copyOf(older, older.length + count);
+        for (int i = 0; i < count; i++) {
+            heads[older.length + i] = recent[count - 1 - i];
+        }
+        return heads;
+    }
+
+    /**
+     * EDT：当前过滤条件下序号在 {@code after} 和 {@code end} 之间的前 {@code limit} 条语句
+     */
+    private long[] headsAfter(long after, long end, int limit) {
+        long[] heads = new long[limit];
+        int count = 0;
+        long from = after + 1;
+        if (filterMatches != null) {
+            for (int i = upperBound(filterMatches, after); i < filterMatches.length && count < limit; i++) {
+                heads[count++] = filterMatches[i];
             }
-            
-            return false;
+            // 过滤之后到达的记录不在匹配结果中，逐条判断
+            from = Math.max(from, filterMatchesEnd);
         }
-        
-        // 如果SQL语句匹配，则显示相关的参数和执行时间等
-        int batchIndex = -1;
-        if (entry.type.equals("params") || entry.type.equals("time") || entry.type.equals("separator")) {
-            for (int i = allLogs.indexOf(entry) - 1; i >= 0; i--) {
-                if (i < 0) break;
-                
-                LogEntry prevEntry = allLogs.get(i);
-                if (prevEntry.type.equals("sql") || prevEntry.type.equals("complete")) {
-                    if (shouldShowLog(prevEntry)) {
-                        return true;
-                    }
-                    break;
-                }
+        for (long sequence = Math.max(from, allLogs.firstSequence()); sequence < end && count < limit; sequence++) {
+            LogEntry entry = allLogs.get(sequence);
+            if (entry != null && (filterMatches == null || shouldShowLog(entry))) {
+                heads[count++] = sequence;
             }
         }
+        return count == limit ? heads : Arrays.copyOf(heads, count);
+    }
+
+    /**
+     * 不过滤时序号小于 {@code before} 的最后 {@code limit} 条语句，可在任意线程调用
+     * <p>
+     * 每个条目都是一条完整的语句，直接按序号计算，不必扫描存储。
+     */
+    private long[] sequencesBefore(long before, int limit) {
+        long to = Math.min(before, allLogs.nextSequence());
+        long from = Math.max(allLogs.firstSequence(), to - limit);
+        long[] result = new long[(int) Math.max(0, to - from)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = from + i;
+        }
+        return result;
+    }
+
+    /**
+     * 匹配结果中序号小于 {@code before} 且仍保留在存储中的最后 {@code limit} 条
+     */
+    private long[] matchesBefore(long[] matches, long before, int limit) {
+        int to = lowerBound(matches, before);
+        int from = Math.max(Math.max(0, to - limit), lowerBound(matches, allLogs.firstSequence()));
+        return from >= to ? new long[0] : Arrays.copyOfRange(matches, from, to);
+    }
+
+    private static int lowerBound(long[] values, long value) {
+        int index = Arrays.binarySearch(values, value);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private static int upperBound(long[] values, long value) {
+        int index = Arrays.binarySearch(values, value);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    private boolean shouldShowLog(LogEntry entry) {
+        return shouldShowLog(entry, currentFilter);
+    }
+
+    private boolean shouldShowLog(LogEntry entry, String filter) {
+        if (filter.isEmpty()) return true;
         
-        return false;
+        // 与过滤刷新使用同一套匹配规则：SQL、表名、语句ID、参数值子串匹配；普通消息只在不过滤时显示
+        return entry.record != null && statementIndex.matches(entry.record, filter.toLowerCase());
     }
 
     public void clearLogs() {
@@ -873,42 +1497,54 @@ public final class MyBatisLogManager implements Disposable {
             }
         }
         logQueue.clear();
-        synchronized (allLogs) {
-            allLogs.clear();
+        queuedCount.set(logQueue.size());
+        lastFlushLagNanos = 0;
+        allLogs.clear();
+        statementIndex.clear();
+        window.clear();
+        followTail = true;
+        filterMatches = filterMatches != null ? new long[0] : null;
+        filterMatchesEnd = allLogs.nextSequence();
+        // 清空前已排队等待显示的条目不再追加
+        displayedUpTo = allLogs.nextSequence();
+        synchronized (renderedSql) {
+            renderedSql.clear();
         }
+        clearRenderedRuns();
     }
-    
+
+    private void clearRenderedRuns() {
+        synchronized (renderedRecords) {
+            for (SqlStatementRecord record : renderedRecords) {
+                record.setRendered(null);
+            }
+            renderedRecords.clear();
+            renderedChars = 0;
+        }
+    }
+
+    public boolean isFormatSql() {
+        return formatSql;
+    }
+
     /**
-     * 移除SQL字符串中的参数类型标记
-     * 例如: 'admin(String)' -> 'admin'
+     * 切换是否排版显示SQL并保存设置，已缓存的样式文本全部作废，按当前过滤条件重建文档
      */
-    private String removeParamTypes(String sql) {
-        // 处理字符串类型参数 - 匹配单引号中的内容
-        Pattern stringPattern = Pattern.compile("'([^']*?)\\(([A-Za-z]+)\\)([^']*?)'");
-        Matcher stringMatcher = stringPattern.matcher(sql);
-        StringBuffer sb = new StringBuffer();
-        
-        while (stringMatcher.find()) {
-            String replacement = "'" + stringMatcher.group(1) + stringMatcher.group(3) + "'";
-            stringMatcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+    public void setFormatSql(boolean format) {
+        if (format == formatSql) {
+            return;
         }
-        stringMatcher.appendTail(sb);
-        
-        // 处理非字符串类型参数 - 数字、布尔值等不带引号的参数
-        Pattern nonStringPattern = Pattern.compile("\\b([\\d\\.]+|true|false|null)\\(([A-Za-z]+)\\)\\b");
-        Matcher nonStringMatcher = nonStringPattern.matcher(sb.toString());
-        sb = new StringBuffer();
-        
-        while (nonStringMatcher.find()) {
-            nonStringMatcher.appendReplacement(sb, nonStringMatcher.group(1));
+        Preferences.userNodeForPackage(MyBatisLogManager.class).putBoolean(FORMAT_SQL_PREF_KEY, format);
+        synchronized (renderedRecords) {
+            formatSql = format;
         }
-        nonStringMatcher.appendTail(sb);
-        
-        return sb.toString();
+        clearRenderedRuns();
+        filterLogs(currentFilter);
     }
-
+    
     @Override
     public void dispose() {
+        filterExecutor.shutdownNow();
         if (logProcessor != null) {
             logProcessor.shutdown();
             try {
@@ -0,0 +1,115 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 项目级的可疑 N+1 列表：保留本次会话中最近的 {@link #MAX_FINDINGS} 条，在工具窗口的 "N+1 Queries" 标签页中查看
+ * <p>
+ * 日志中的 N+1 提示是普通消息，设置过滤条件后不显示；这里保存结构化的结果，不受日志过滤和窗口裁剪影响。
+ */
+@Service(Service.Level.PROJECT)
+public final class NPlusOneFindings {
+    static final int MAX_FINDINGS = 100;
+
+    /**
+     * 一次可疑的 N+1：{@code child} 的模板连续执行了 {@code count} 次，{@code parent} 是第一次执行之前的语句
+     */
+    public static final class Finding {
+        private final String threadName;
+        private final SqlStatementRecord parent;
+        private final SqlStatementRecord child;
+        private final int count;
+
+        public Finding(String threadName, @Nullable SqlStatementRecord parent, SqlStatementRecord child, int count) {
+            this.threadName = threadName;
+            this.parent = parent;
+            this.child = child;
+            this.count = count;
+        }
+
+        /**
+         * 执行所在的线程名，日志中没有线程名时为空字符串
+         */
+        public String getThreadName() {
+            return threadName;
+        }
+
+        @Nullable
+        public SqlStatementRecord getParent() {
+            return parent;
+        }
+
+        /**
+         * 这一轮重复中第一次执行的记录
+         */
+        public SqlStatementRecord getChild() {
+            return child;
+        }
+
+        public int getCount() {
+            return count;
+        }
+    }
+
+    // 最早的在最前，所有访问都在 synchronized (findings) 中进行
+    private final ArrayDeque<Finding> findings = new ArrayDeque<>(MAX_FINDINGS);
+    private final AtomicLong findingCount = new AtomicLong();
+    // 每次变化加一，界面据此判断是否需要刷新
+    private final AtomicLong version = new AtomicLong();
+
+    public static NPlusOneFindings getInstance(Project project) {
+        return project.getService(NPlusOneFindings.class);
+    }
+
+    public void add(Finding finding) {
+        findingCount.incrementAndGet();
+        synchronized (findings) {
+            if (findings.size() == MAX_FINDINGS) {
+                findings.pollFirst();
+            }
+            findings.addLast(finding);
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * 最近的可疑 N+1，最新的在前
+     */
+    public List<Finding> getFindings() {
+        synchronized (findings) {
+            List<Finding> result = new ArrayList<>(findings.size());
+            Iterator<Finding> it = findings.descendingIterator();
+            while (it.hasNext()) {
+                result.add(it.next());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 已报告的可疑 N+1 总数，包括已不在列表中的
+     */
+    public long getFindingCount() {
+        return findingCount.get();
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public void reset() {
+        synchronized (findings) {
+            findings.clear();
+        }
+        findingCount.set(0);
+        version.incrementAndGet();
+    }
+}
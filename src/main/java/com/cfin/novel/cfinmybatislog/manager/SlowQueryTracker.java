@@ -0,0 +1,316 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.prefs.PreferenceChangeEvent;
+import java.util.prefs.PreferenceChangeListener;
+import java.util.prefs.Preferences;
+
+/**
+ * 项目级慢SQL跟踪：按全局或 Mapper 阈值判断慢SQL，保留本次会话中最慢的 {@link #TOP_K} 条，并发送限流的气泡通知
+ * <p>
+ * 阈值来自 Preferences：{@value #THRESHOLD_PREF_KEY} 为全局阈值（毫秒）；
+ * {@value #MAPPER_THRESHOLDS_PREF_KEY} 为按 Mapper 的阈值，格式为 {@code 语句ID或命名空间=毫秒}，以分号分隔，
+ * 语句ID优先于命名空间，命名空间可以逐级向上匹配。两者都可以在 "Slow Queries" 标签页中编辑，
+ * 设置变化（包括其他项目窗口中的修改）后重新读取，之后的执行按新阈值判断，最慢列表中低于新阈值的执行被移除。
+ * <p>
+ * 最慢的执行保存在以耗时为序的有界最小堆中，新执行只和堆顶比较，内存固定。
+ * 通知按令牌桶限流：最多连续发送 {@link #NOTIFY_BURST} 条，之后每 {@link #NOTIFY_INTERVAL_MS} 毫秒恢复一条，
+ * 被限流的慢SQL计数在下一条通知中一并提示，完整列表在工具窗口的 "Slow Queries" 标签页中查看。
+ */
+@Service(Service.Level.PROJECT)
+public final class SlowQueryTracker implements Disposable {
+    private static final Logger LOG = Logger.getInstance(SlowQueryTracker.class);
+
+    static final String THRESHOLD_PREF_KEY = "cfin.mybatis.log.slow.threshold.ms";
+    static final String MAPPER_THRESHOLDS_PREF_KEY = "cfin.mybatis.log.slow.mapper.thresholds";
+    private static final String NOTIFY_PREF_KEY = "cfin.mybatis.log.slow.notify";
+    private static final long DEFAULT_THRESHOLD_MS = 1000;
+    // 与 plugin.xml 中注册的通知组ID一致
+    private static final String NOTIFICATION_GROUP_ID = "MyBatis Logger";
+
+    static final int TOP_K = 100;
+    private static final int NOTIFY_BURST = 3;
+    private static final long NOTIFY_INTERVAL_MS = 10_000;
+    // 通知中SQL的最大长度
+    private static final int NOTIFY_SQL_LENGTH = 200;
+
+    private static final Comparator<SqlStatementRecord> BY_LATENCY =
+            Comparator.comparingLong(SqlStatementRecord::getLatencyMillis).thenComparingLong(SqlStatementRecord::getSequence);
+
+    private final Project project;
+    private final Preferences preferences = Preferences.userNodeForPackage(SlowQueryTracker.class);
+    private final PreferenceChangeListener preferenceListener = this::preferenceChanged;
+    private volatile long thresholdMillis;
+    private volatile Map<String, Long> mapperThresholds;
+    private final boolean notify;
+
+    // 堆顶是已保留的执行中最快的一条，所有访问都在 synchronized (slowest) 中进行
+    private final PriorityQueue<SqlStatementRecord> slowest = new PriorityQueue<>(TOP_K + 1, BY_LATENCY);
+    private final AtomicLong slowCount = new AtomicLong();
+    // 每次变化加一，界面据此判断是否需要刷新
+    private final AtomicLong version = new AtomicLong();
+
+    // 通知令牌桶，在 synchronized (this) 中访问
+    private double notifyTokens = NOTIFY_BURST;
+    private long notifyRefilledAt = System.nanoTime();
+    private final AtomicInteger suppressedCount = new AtomicInteger();
+
+    public SlowQueryTracker(Project project) {
+        this.project = project;
+        loadThresholds();
+        this.notify = preferences.getBoolean(NOTIFY_PREF_KEY, true);
+        preferences.addPreferenceChangeListener(preferenceListener);
+    }
+
+    public static SlowQueryTracker getInstance(Project project) {
+        return project.getService(SlowQueryTracker.class);
+    }
+
+    private void loadThresholds() {
+        thresholdMillis = Math.max(0, preferences.getLong(THRESHOLD_PREF_KEY, DEFAULT_THRESHOLD_MS));
+        mapperThresholds = parseMapperThresholds(preferences.get(MAPPER_THRESHOLDS_PREF_KEY, ""));
+    }
+
+    /**
+     * Preferences 的通知线程：其他项目窗口修改了阈值
+     */
+    private void preferenceChanged(PreferenceChangeEvent event) {
+        String key = event.getKey();
+        if (THRESHOLD_PREF_KEY.equals(key) || MAPPER_THRESHOLDS_PREF_KEY.equals(key)) {
+            reloadThresholds();
+        }
+    }
+
+    /**
+     * 重新读取阈值，并移除最慢列表中不再达到阈值的执行
+     */
+    private void reloadThresholds() {
+        loadThresholds();
+        synchronized (slowest) {
+            slowest.removeIf(record -> !isSlow(record));
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * 保存新的阈值并立即生效，其他项目的跟踪器在收到设置变化后重新读取
+     * @param mapperThresholds {@code 语句ID或命名空间=毫秒;...}
+     * @throws IllegalArgumentException 阈值为负数或按 Mapper 的阈值格式错误
+     */
+    public void setThresholds(long thresholdMillis, String mapperThresholds) {
+        if (thresholdMillis < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative: " + thresholdMillis);
+        }
+        String normalized = formatMapperThresholds(parseMapperThresholds(mapperThresholds, true));
+        preferences.putLong(THRESHOLD_PREF_KEY, thresholdMillis);
+        preferences.put(MAPPER_THRESHOLDS_PREF_KEY, normalized);
+        reloadThresholds();
+    }
+
+    /**
+     * 解析 {@code 语句ID或命名空间=毫秒;...}，格式错误的项忽略
+     */
+    static Map<String, Long> parseMapperThresholds(String value) {
+        return parseMapperThresholds(value, false);
+    }
+
+    /**
+     * @param strict 为 true 时格式错误的项抛出 {@link IllegalArgumentException}，否则记录警告后忽略
+     */
+    private static Map<String, Long> parseMapperThresholds(String value, boolean strict) {
+        Map<String, Long> thresholds = new HashMap<>();
+        for (String item : value.split(";")) {
+            if (item.isBlank()) {
+                continue;
+            }
+            int separator = item.indexOf('=');
+            long threshold = -1;
+            if (separator > 0) {
+                try {
+                    threshold = Long.parseLong(item.substring(separator + 1).trim());
+                } catch (NumberFormatException ignored) {
+                    // 按格式错误处理
+                }
+            }
+            if (threshold < 0 || item.substring(0, separator).isBlank()) {
+                if (strict) {
+                    throw new IllegalArgumentException("Invalid mapper threshold: " + item.trim());
+                }
+                LOG.warn("Ignoring invalid slow query threshold: " + item);
+                continue;
+            }
+            thresholds.put(item.substring(0, separator).trim(), threshold);
+        }
+        return thresholds;
+    }
+
+    /**
+     * 按语句ID排序输出 {@code 语句ID或命名空间=毫秒; ...}
+     */
+    static String formatMapperThresholds(Map<String, Long> thresholds) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Long> entry : new TreeMap<>(thresholds).entrySet()) {
+            if (text.length() > 0) {
+                text.append("; ");
+            }
+            text.append(entry.getKey()).append('=').append(entry.getValue());
+        }
+        return text.toString();
+    }
+
+    /**
+     * {@code mapperId} 对应的慢SQL阈值（毫秒）：先找完整语句ID，再逐级找命名空间，最后使用全局阈值
+     */
+    public long getThresholdMillis(@Nullable String mapperId) {
+        // 设置变化时两个字段会被替换，各读取一次
+        long global = thresholdMillis;
+        Map<String, Long> thresholds = mapperThresholds;
+        if (mapperId == null || thresholds.isEmpty()) {
+            return global;
+        }
+        String key = mapperId;
+        while (true) {
+            Long threshold = thresholds.get(key);
+            if (threshold != null) {
+                return threshold;
+            }
+            int dot = key.lastIndexOf('.');
+            if (dot <= 0) {
+                return global;
+            }
+            key = key.substring(0, dot);
+        }
+    }
+
+    /**
+     * 执行耗时已知且达到所属 Mapper 的阈值
+     */
+    public boolean isSlow(SqlStatementRecord record) {
+        long latency = record.getLatencyMillis();
+        return latency >= 0 && latency >= getThresholdMillis(record.getMapperId());
+    }
+
+    /**
+     * 检查一条已发布的执行，慢SQL计入最慢列表并尝试发送通知
+     */
+    public void onStatement(SqlStatementRecord record) {
+        if (!isSlow(record)) {
+            return;
+        }
+        slowCount.incrementAndGet();
+        synchronized (slowest) {
+            if (slowest.size() < TOP_K) {
+                slowest.add(record);
+            } else if (BY_LATENCY.compare(record, slowest.peek()) > 0) {
+                slowest.poll();
+                slowest.add(record);
+            }
+        }
+        version.incrementAndGet();
+        if (notify) {
+            maybeNotify(record);
+        }
+    }
+
+    private void maybeNotify(SqlStatementRecord record) {
+        if (!acquireNotifyToken()) {
+            suppressedCount.incrementAndGet();
+            return;
+        }
+        StringBuilder content = new StringBuilder(NOTIFY_SQL_LENGTH + 128);
+        content.append(record.getLatencyMillis()).append(" ms");
+        if (record.getMapperId() != null) {
+            content.append(" [").append(StringUtil.escapeXmlEntities(record.getMapperId())).append(']');
+        }
+        String sql = record.getSql();
+        // 通知内容按 HTML 显示，SQL中的 < > & 需要转义
+        content.append(": ").append(StringUtil.escapeXmlEntities(
+                sql.length() > NOTIFY_SQL_LENGTH ? sql.substring(0, NOTIFY_SQL_LENGTH) + "..." : sql));
+        int suppressed = suppressedCount.getAndSet(0);
+        if (suppressed > 0) {
+            content.append(" (").append(suppressed).append(" more slow queries not notified)");
+        }
+        NotificationGroupManager.getInstance().getNotificationGroup(NOTIFICATION_GROUP_ID)
+                .createNotification("Slow SQL", content.toString(), NotificationType.WARNING)
+                .notify(project);
+    }
+
+    private synchronized boolean acquireNotifyToken() {
+        long now = System.nanoTime();
+        notifyTokens = Math.min(NOTIFY_BURST,
+                notifyTokens + (double) (now - notifyRefilledAt) / TimeUnit.MILLISECONDS.toNanos(NOTIFY_INTERVAL_MS));
+        notifyRefilledAt = now;
+        if (notifyTokens < 1) {
+            return false;
+        }
+        notifyTokens -= 1;
+        return true;
+    }
+
+    /**
+     * 本次会话中最慢的执行，按耗时降序
+     */
+    public List<SqlStatementRecord> getSlowest() {
+        List<SqlStatementRecord> result;
+        synchronized (slowest) {
+            result = new ArrayList<>(slowest);
+        }
+        result.sort(Collections.reverseOrder(BY_LATENCY));
+        return result;
+    }
+
+    /**
+     * 达到阈值的执行总数，包括已不在最慢列表中的
+     */
+    public long getSlowCount() {
+        return slowCount.get();
+    }
+
+    public long getThresholdMillis() {
+        return thresholdMillis;
+    }
+
+    /**
+     * 当前按 Mapper 的阈值，格式与 {@link #setThresholds} 相同
+     */
+    public String getMapperThresholds() {
+        return formatMapperThresholds(mapperThresholds);
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public void reset() {
+        synchronized (slowest) {
+            slowest.clear();
+        }
+        slowCount.set(0);
+        suppressedCount.set(0);
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void dispose() {
+        preferences.removePreferenceChangeListener(preferenceListener);
+    }
+}
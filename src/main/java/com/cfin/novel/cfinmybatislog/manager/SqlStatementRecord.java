@@ -0,0 +1,122 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+import com.cfin.novel.cfinmybatislog.filter.SqlParameters;
+import com.cfin.novel.cfinmybatislog.filter.SqlTemplate;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * 一次SQL执行的记录，关联完成后作为一个事件通过 {@link MyBatisLogManager#addStatement(SqlStatementRecord)} 发布
+ * <p>
+ * 只保存共享的 {@link SqlTemplate} 引用和参数（原始参数文本加偏移数组），不保存SQL副本和拼好的完整SQL；
+ * 完整SQL在显示、复制时才通过 {@link MyBatisLogManager#getCompleteSql(SqlStatementRecord)} 生成。
+ * 显示的 SQL、Parameters、Complete SQL、Time 各行都由记录生成，不再以带前缀的文本传递。
+ * <p>
+ * 生成的样式文本缓存在记录上，再次显示（翻页、定位、过滤）时直接复制；缓存由日志管理器按总长度淘汰。
+ */
+public final class SqlStatementRecord {
+    private final SqlTemplate template;
+    private final SqlParameters parameters;
+    private final String mapperId;
+    private final String threadName;
+    private final long latencyMillis;
+    private final long rows;
+    private final long startMillis;
+    // 发布时由日志管理器分配的序号，发布之前为-1
+    private volatile long sequence = -1;
+    // 显示用的样式文本，未生成或已被淘汰时为null
+    private volatile StyledRuns rendered;
+
+    /**
+     * @param parameters    参数，超时仍未收到参数行的孤立SQL为null
+     * @param mapperId      输出该SQL的 Mapper 语句ID（日志的 logger 名称），未知时为null
+     * @param threadName    执行该SQL的线程名，未知时为null
+     * @param latencyMillis 执行耗时（毫秒），未知时为-1
+     * @param rows          结果行数（Total）或影响行数（Updates），未知时为-1
+     * @param startMillis   开始执行的时间（epoch 毫秒）
+     */
+    public SqlStatementRecord(SqlTemplate template, @Nullable SqlParameters parameters, @Nullable String mapperId,
+                              @Nullable String threadName, long latencyMillis, long rows, long startMillis) {
+        this.template = template;
+        this.parameters = parameters != null ? parameters.trimToSize() : null;
+        this.mapperId = mapperId;
+        this.threadName = threadName;
+        this.latencyMillis = latencyMillis;
+        this.rows = rows;
+        this.startMillis = startMillis;
+    }
+
+    public SqlTemplate getTemplate() {
+        return template;
+    }
+
+    public String getSql() {
+        return template.getSql();
+    }
+
+    @Nullable
+    public SqlParameters getParameters() {
+        return parameters;
+    }
+
+    @Nullable
+    public String getMapperId() {
+        return mapperId;
+    }
+
+    @Nullable
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * @return 执行耗时（毫秒），未知时为-1
+     */
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * @return 结果行数或影响行数，未知时为-1
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return 在日志管理器中的序号，尚未发布时为-1
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    @Nullable
+    StyledRuns getRendered() {
+        return rendered;
+    }
+
+    void setRendered(@Nullable StyledRuns rendered) {
+        this.rendered = rendered;
+    }
+
+    public boolean hasParameters() {
+        return parameters != null;
+    }
+
+    /**
+     * 用参数替换占位符生成完整SQL，每次调用都重新生成
+     */
+    String renderCompleteSql() {
+        if (parameters == null || parameters.isEmpty()) {
+            return template.getSql();
+        }
+        return template.render(parameters);
+    }
+}
@@ -0,0 +1,211 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+import com.cfin.novel.cfinmybatislog.utils.HyperLogLog;
+import com.cfin.novel.cfinmybatislog.utils.LatencyHistogram;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 项目级SQL执行统计：按归一化语句（模板指纹）和 Mapper 语句ID分别汇总次数、耗时分布和行数
+ * <p>
+ * 每次执行在发布时计入一次，只更新对应的计数器和直方图，不保存执行记录，查看统计时也不扫描历史日志。
+ * 全部计数使用原子变量，记录不加锁；每个分组的内存固定，分组数量有上限，超出后归入 {@link #OTHER_KEY}。
+ * <p>
+ * 为找出可以缓存的查询，每个分组还统计：{@link #DUPLICATE_WINDOW_MS} 毫秒内完整SQL完全相同的重复执行次数
+ * （只和该分组最近 {@link #RECENT_EXECUTIONS} 次执行比较），以及用 {@link HyperLogLog} 估计的不同参数组合数量。
+ */
+@Service(Service.Level.PROJECT)
+public final class SqlStatistics {
+    // 每个维度最多保留的分组数量
+    private static final int MAX_GROUPS = 2048;
+    static final String OTHER_KEY = "(other)";
+    static final String UNKNOWN_MAPPER = "(unknown)";
+    // 完整SQL相同且开始时间相差不超过该值的执行视为重复
+    static final long DUPLICATE_WINDOW_MS = 1000;
+    // 每个分组保留的最近执行数量，重复只在其中查找
+    static final int RECENT_EXECUTIONS = 16;
+
+    private final ConcurrentHashMap<String, Group> byStatement = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Group> byMapper = new ConcurrentHashMap<>();
+    // 每次记录完成后加一，界面据此判断是否需要刷新
+    private final AtomicLong version = new AtomicLong();
+
+    public static SqlStatistics getInstance(Project project) {
+        return project.getService(SqlStatistics.class);
+    }
+
+    /**
+     * 一个分组的累计统计，所有字段都可以并发更新
+     */
+    public static final class Group {
+        private final String key;
+        private final LongAdder count = new LongAdder();
+        // 只统计耗时已知的执行
+        private final LongAdder timedCount = new LongAdder();
+        private final LongAdder totalMillis = new LongAdder();
+        private final AtomicLong maxMillis = new AtomicLong(-1);
+        private final LongAdder rows = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+        private final LongAdder duplicates = new LongAdder();
+        private final HyperLogLog distinctParameters = new HyperLogLog();
+        // 最近执行的完整SQL哈希和开始时间，环形覆盖；并发写入时可能错配一对，只影响个别重复的判断
+        private final AtomicLongArray recentKeys = new AtomicLongArray(RECENT_EXECUTIONS);
+        private final AtomicLongArray recentTimes = new AtomicLongArray(RECENT_EXECUTIONS);
+        private final AtomicInteger recentCursor = new AtomicInteger();
+        // 每次更新完成后加一，界面据此只重新读取有变化的分组
+        private final AtomicLong stamp = new AtomicLong();
+
+        Group(String key) {
+            this.key = key;
+        }
+
+        void record(SqlStatementRecord record, long parametersHash, long executionKey) {
+            count.increment();
+            long latency = record.getLatencyMillis();
+            if (latency >= 0) {
+                timedCount.increment();
+                totalMillis.add(latency);
+                maxMillis.accumulateAndGet(latency, Math::max);
+                histogram.record(latency);
+            }
+            if (record.getRows() > 0) {
+                rows.add(record.getRows());
+            }
+            distinctParameters.add(parametersHash);
+            if (isRecentDuplicate(executionKey, record.getStartMillis())) {
+                duplicates.increment();
+            }
+            stamp.incrementAndGet();
+        }
+
+        private boolean isRecentDuplicate(long executionKey, long startMillis) {
+            boolean duplicate = false;
+            for (int i = 0; i < RECENT_EXECUTIONS && !duplicate; i++) {
+                duplicate = recentKeys.get(i) == executionKey
+                        && Math.abs(startMillis - recentTimes.get(i)) <= DUPLICATE_WINDOW_MS;
+            }
+            int slot = recentCursor.getAndIncrement() & (RECENT_EXECUTIONS - 1);
+            recentTimes.set(slot, startMillis);
+            recentKeys.set(slot, executionKey);
+            return duplicate;
+        }
+
+        /**
+         * 语句维度为归一化指纹，Mapper 维度为语句ID
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * 更新戳，先读取更新戳再读取各项数值，之后更新戳不变说明读到的数值已是最新
+         */
+        public long getStamp() {
+            return stamp.get();
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalMillis() {
+            return totalMillis.sum();
+        }
+
+        /**
+         * @return 平均耗时（毫秒），没有已知耗时时为-1
+         */
+        public double getMeanMillis() {
+            long timed = timedCount.sum();
+            return timed == 0 ? -1 : (double) totalMillis.sum() / timed;
+        }
+
+        /**
+         * @return {@code quantile} 分位数耗时（毫秒，直方图桶上界，不超过最大值），没有已知耗时时为-1
+         */
+        public long getPercentileMillis(double quantile) {
+            long value = histogram.percentile(quantile);
+            return value < 0 ? -1 : Math.min(value, maxMillis.get());
+        }
+
+        public long getMaxMillis() {
+            return maxMillis.get();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        /**
+         * 在 {@link #DUPLICATE_WINDOW_MS} 毫秒内与之前某次执行完整SQL完全相同的执行次数
+         */
+        public long getDuplicateCount() {
+            return duplicates.sum();
+        }
+
+        /**
+         * 不同参数组合数量的估计值（相对误差约3%）
+         */
+        public long getDistinctParameterSets() {
+            return Math.max(1, distinctParameters.estimate());
+        }
+
+        /**
+         * 平均每个参数组合执行的次数，越大越适合缓存
+         */
+        public double getExecutionsPerParameterSet() {
+            return (double) getCount() / getDistinctParameterSets();
+        }
+    }
+
+    /**
+     * 计入一次已发布的SQL执行
+     */
+    public void record(SqlStatementRecord record) {
+        // 参数哈希只计算一次，两个维度共用；同一分组中SQL文本不同（如 IN 列表长度不同）的执行不算重复
+        long parametersHash = record.hasParameters() ? record.getParameters().hash64() : 0;
+        long executionKey = parametersHash * 31 + record.getSql().hashCode();
+        groupOf(byStatement, record.getTemplate().getFingerprint()).record(record, parametersHash, executionKey);
+        String mapperId = record.getMapperId();
+        groupOf(byMapper, mapperId != null ? mapperId : UNKNOWN_MAPPER).record(record, parametersHash, executionKey);
+        // 分组更新完成后才增加版本号，界面读到新版本时这次记录已经可见
+        version.incrementAndGet();
+    }
+
+    private static Group groupOf(ConcurrentHashMap<String, Group> groups, String key) {
+        Group group = groups.get(key);
+        if (group != null) {
+            return group;
+        }
+        // 分组数量超过上限后不再新建，并发时可能略微超出，不影响正确性
+        if (groups.size() >= MAX_GROUPS) {
+            key = OTHER_KEY;
+        }
+        return groups.computeIfAbsent(key, Group::new);
+    }
+
+    /**
+     * 按语句或按 Mapper 的全部分组，顺序不固定；分组对象在重置前保持不变，可以持有引用后读取最新值
+     */
+    public List<Group> getGroups(boolean byMapperId) {
+        return new ArrayList<>((byMapperId ? byMapper : byStatement).values());
+    }
+
+    public long getVersion() {
+        return version.get();
+    }
+
+    public void reset() {
+        byStatement.clear();
+        byMapper.clear();
+        version.incrementAndGet();
+    }
+}
@@ -0,0 +1,109 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+import com.cfin.novel.cfinmybatislog.filter.SqlTemplate;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 项目级SQL模板缓存：以 Preparing 中的原始SQL为键，缓存编译好的 {@link SqlTemplate}
+ * <p>
+ * 同一批Mapper语句会被反复执行，占位符位置、语句类型、表名和指纹只需计算一次，
+ * 生成完整SQL、按表名过滤和统计都复用同一个模板。按访问顺序淘汰最久未使用的模板，条目数量有上限。
+ */
+@Service(Service.Level.PROJECT)
+public final class SqlTemplateCache implements Disposable {
+    private static final Logger LOG = Logger.getInstance(SqlTemplateCache.class);
+
+    // 最多缓存的模板数量，通常一个项目的Mapper语句只有几百条
+    private static final int MAX_TEMPLATES = 1024;
+
+    private final Project project;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    // accessOrder=true 的 LinkedHashMap 即为LRU，所有访问都在 synchronized (templates) 中进行
+    private final LinkedHashMap<String, SqlTemplate> templates = new LinkedHashMap<String, SqlTemplate>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SqlTemplate> eldest) {
+            if (size() > MAX_TEMPLATES) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public SqlTemplateCache(Project project) {
+        this.project = project;
+    }
+
+    public static SqlTemplateCache getInstance(Project project) {
+        return project.getService(SqlTemplateCache.class);
+    }
+
+    /**
+     * 获取SQL对应的模板，不存在时编译并放入缓存
+     */
+    public SqlTemplate get(String sql) {
+        synchronized (templates) {
+            SqlTemplate template = templates.get(sql);
+            if (template != null) {
+                hits.incrementAndGet();
+                return template;
+            }
+        }
+
+        // 编译不持有锁，并发编译同一条SQL时保留先放入的那个
+        misses.incrementAndGet();
+        SqlTemplate compiled = SqlTemplate.compile(sql);
+        synchronized (templates) {
+            SqlTemplate existing = templates.putIfAbsent(sql, compiled);
+            return existing != null ? existing : compiled;
+        }
+    }
+
+    public int size() {
+        synchronized (templates) {
+            return templates.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public void clear() {
+        synchronized (templates) {
+            templates.clear();
+        }
+    }
+
+    public String getStatsSummary() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return "templates=" + size() + ", hits=" + hitCount + ", misses=" + misses.get()
+                + ", evictions=" + evictions.get()
+                + ", hitRate=" + (total == 0 ? 0 : hitCount * 100 / total) + "%";
+    }
+
+    @Override
+    public void dispose() {
+        LOG.info("SqlTemplateCache disposed for project: " + project.getName() + ", stats: " + getStatsSummary());
+        clear();
+    }
+}
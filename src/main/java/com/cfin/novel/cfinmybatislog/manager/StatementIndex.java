@@ -0,0 +1,446 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+import com.cfin.novel.cfinmybatislog.filter.SqlParameters;
+import com.cfin.novel.cfinmybatislog.filter.SqlTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.LongFunction;
+
+/**
+ * 已保存SQL执行的增量倒排索引，记录到达时维护，过滤时不再逐条扫描历史
+ * <p>
+ * 同一个模板和 Mapper 语句ID 的执行共用一个分组，分组保存一段小写的可搜索文本（SQL、表名、语句ID）
+ * 和该分组所有执行的序号列表。分组文本和参数值（小写、去掉单引号）都按连续三个字符建立索引：
+ * 查询时取过滤文本各个三字符片段中最短的分组列表，逐个确认包含过滤文本；参数值取各片段序号列表的交集，
+ * 再读取记录确认某个参数值包含过滤文本。耗时与候选数量成正比，与分组数和历史记录总数无关。
+ * <p>
+ * 不足三个字符的过滤文本没有片段可查，逐个检查分组文本（分组数通常只有几百个），参数值只能精确匹配。
+ * 序号小于 {@code firstValid} 的记录已从环形存储中淘汰，查询时跳过，并在定期清理时从列表中删除。
+ */
+final class StatementIndex {
+
+    // 超过该长度的参数值不建立索引，避免大文本占用内存
+    private static final int MAX_VALUE_TOKEN_LENGTH = 64;
+    // 每添加这么多条记录清理一次已淘汰的序号
+    private static final int PRUNE_INTERVAL = 4096;
+    // 索引片段的长度
+    private static final int GRAM = 3;
+
+    private final Map<GroupKey, Group> groups = new HashMap<>();
+    // 三字符片段 -> 文本包含该片段的分组
+    private final Map<Long, List<Group>> groupGrams = new HashMap<>();
+    // 完整的参数值 -> 序号，用于不足三个字符的过滤文本
+    private final Map<String, SequenceList> valueTokens = new HashMap<>();
+    // 三字符片段 -> 某个参数值包含该片段的记录序号
+    private final Map<Long, SequenceList> valueGrams = new HashMap<>();
+    private int addsSincePrune;
+
+    /**
+     * 添加一条执行记录，{@code sequence} 必须单调递增
+     */
+    synchronized void add(long sequence, SqlStatementRecord record, long firstValid) {
+        GroupKey key = new GroupKey(record.getTemplate(), record.getMapperId());
+        Group group = groups.get(key);
+        if (group == null) {
+            group = new Group(searchTextOf(record));
+            groups.put(key, group);
+            for (long gram : gramsOf(group.searchText)) {
+                groupGrams.computeIfAbsent(gram, g -> new ArrayList<>(2)).add(group);
+            }
+        }
+        group.sequences.add(sequence);
+
+        SqlParameters parameters = record.getParameters();
+        if (parameters != null) {
+            for (int i = 0; i < parameters.size(); i++) {
+                String token = valueToken(parameters, i);
+                if (token != null) {
+                    SequenceList list = valueTokens.computeIfAbsent(token, t -> new SequenceList());
+                    // 同一条记录中重复的值只记一次
+                    if (list.last() != sequence) {
+                        list.add(sequence);
+                    }
+                    for (int g = 0; g + GRAM <= token.length(); g++) {
+                        SequenceList grams = valueGrams.computeIfAbsent(gramAt(token, g), t -> new SequenceList());
+                        if (grams.last() != sequence) {
+                            grams.add(sequence);
+                        }
+                    }
+                }
+            }
+        }
+
+        if (++addsSincePrune >= PRUNE_INTERVAL) {
+            prune(firstValid);
+        }
+    }
+
+    /**
+     * 查询SQL、表名、Mapper 语句ID 或某个参数值包含 {@code lowerCaseText} 的记录
+     * @param records 按序号读取记录，用于确认参数值；已淘汰时返回null
+     * @return 按升序排列、不重复的序号
+     */
+    synchronized long[] query(String lowerCaseText, long firstValid, LongFunction<SqlStatementRecord> records) {
+        SequenceList result = new SequenceList();
+        int matchedLists = 0;
+        for (Group group : candidateGroups(lowerCaseText)) {
+            if (group.searchText.contains(lowerCaseText)) {
+                result.addAll(group.sequences, firstValid);
+                matchedLists++;
+            }
+        }
+
+        String target = stripQuotes(lowerCaseText);
+        if (target.length() < GRAM) {
+            SequenceList values = valueTokens.get(target);
+            if (values != null) {
+                result.addAll(values, firstValid);
+                matchedLists++;
+            }
+        } else {
+            long[] candidates = candidateValues(target, firstValid);
+            int count = 0;
+            for (long sequence : candidates) {
+                SqlStatementRecord record = records.apply(sequence);
+                if (record != null && valueContains(record.getParameters(), target)) {
+                    candidates[count++] = sequence;
+                }
+            }
+            if (count > 0) {
+                result.addAll(candidates, count);
+                matchedLists++;
+            }
+        }
+
+        long[] sequences = result.toArray();
+        if (matchedLists > 1) {
+            // 多个列表合并后需要排序去重
+            Arrays.sort(sequences);
+            int count = 0;
+            for (int i = 0; i < sequences.length; i++) {
+                if (i == 0 || sequences[i] != sequences[i - 1]) {
+                    sequences[count++] = sequences[i];
+                }
+            }
+            sequences = count == sequences.length ? sequences : Arrays.copyOf(sequences, count);
+        }
+        return sequences;
+    }
+
+    /**
+     * 记录是否匹配过滤文本，与 {@link #query} 的规则一致，用于新到达的记录
+     */
+    synchronized boolean matches(SqlStatementRecord record, String lowerCaseText) {
+        Group group = groups.get(new GroupKey(record.getTemplate(), record.getMapperId()));
+        String searchText = group != null ? group.searchText : searchTextOf(record);
+        if (searchText.contains(lowerCaseText)) {
+            return true;
+        }
+        String target = stripQuotes(lowerCaseText);
+        if (target.length() < GRAM) {
+            SqlParameters parameters = record.getParameters();
+            if (parameters != null) {
+                for (int i = 0; i < parameters.size(); i++) {
+                    if (target.equals(valueToken(parameters, i))) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+        return valueContains(record.getParameters(), target);
+    }
+
+    synchronized void clear() {
+        groups.clear();
+        groupGrams.clear();
+        valueTokens.clear();
+        valueGrams.clear();
+        addsSincePrune = 0;
+    }
+
+    synchronized int groupCount() {
+        return groups.size();
+    }
+
+    /**
+     * 删除已淘汰的序号以及清空后的分组和词项
+     */
+    private void prune(long firstValid) {
+        addsSincePrune = 0;
+        Iterator<Group> groupIt = groups.values().iterator();
+        while (groupIt.hasNext()) {
+            Group group = groupIt.next();
+            group.sequences.dropBefore(firstValid);
+            if (group.sequences.isEmpty()) {
+                groupIt.remove();
+                for (long gram : gramsOf(group.searchText)) {
+                    List<Group> list = groupGrams.get(gram);
+                    list.remove(group);
+                    if (list.isEmpty()) {
+                        groupGrams.remove(gram);
+                    }
+                }
+            }
+        }
+        pruneLists(valueTokens, firstValid);
+        pruneLists(valueGrams, firstValid);
+    }
+
+    private static void pruneLists(Map<?, SequenceList> lists, long firstValid) {
+        Iterator<SequenceList> it = lists.values().iterator();
+        while (it.hasNext()) {
+            SequenceList sequences = it.next();
+            sequences.dropBefore(firstValid);
+            if (sequences.isEmpty()) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 文本可能包含 {@code lowerCaseText} 的分组：过滤文本各片段对应的分组列表中最短的一个
+     */
+    private Iterable<Group> candidateGroups(String lowerCaseText) {
+        if (lowerCaseText.length() < GRAM) {
+            return groups.values();
+        }
+        List<Group> shortest = null;
+        for (int i = 0; i + GRAM <= lowerCaseText.length(); i++) {
+            List<Group> list = groupGrams.get(gramAt(lowerCaseText, i));
+            if (list == null) {
+                return List.of();
+            }
+            if (shortest == null || list.size() < shortest.size()) {
+                shortest = list;
+            }
+        }
+        return shortest;
+    }
+
+    /**
+     * 参数值包含 {@code target} 的全部片段的记录序号，即各片段序号列表的交集
+     */
+    private long[] candidateValues(String target, long firstValid) {
+        int gramCount = target.length() - GRAM + 1;
+        SequenceList[] lists = new SequenceList[gramCount];
+        for (int i = 0; i < gramCount; i++) {
+            lists[i] = valueGrams.get(gramAt(target, i));
+            if (lists[i] == null) {
+                return new long[0];
+            }
+        }
+        // 从最短的列表开始，逐个在其余列表中二分查找
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+        long[] candidates = lists[0].toArray(firstValid);
+        int count = candidates.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            int kept = 0;
+            for (int c = 0; c < count; c++) {
+                if (lists[i].contains(candidates[c])) {
+                    candidates[kept++] = candidates[c];
+                }
+            }
+            count = kept;
+        }
+        return count == candidates.length ? candidates : Arrays.copyOf(candidates, count);
+    }
+
+    private static boolean valueContains(SqlParameters parameters, String target) {
+        if (parameters == null) {
+            return false;
+        }
+        for (int i = 0; i < parameters.size(); i++) {
+            String token = valueToken(parameters, i);
+            if (token != null && token.contains(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 文本中所有不重复的三字符片段
+     */
+    private static long[] gramsOf(String text) {
+        if (text.length() < GRAM) {
+            return new long[0];
+        }
+        long[] grams = new long[text.length() - GRAM + 1];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = gramAt(text, i);
+        }
+        Arrays.sort(grams);
+        int count = 0;
+        for (int i = 0; i < grams.length; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[count++] = grams[i];
+            }
+        }
+        return count == grams.length ? grams : Arrays.copyOf(grams, count);
+    }
+
+    private static long gramAt(String text, int index) {
+        return (long) text.charAt(index) << 32 | (long) text.charAt(index + 1) << 16 | text.charAt(index + 2);
+    }
+
+    private static String searchTextOf(SqlStatementRecord record) {
+        StringBuilder text = new StringBuilder(record.getSql().length() + 64);
+        text.append(record.getSql().toLowerCase());
+        for (String table : record.getTemplate().getTables()) {
+            text.append('\n').append(table);
+        }
+        if (record.getMapperId() != null) {
+            text.append('\n').append(record.getMapperId().toLowerCase());
+        }
+        return text.toString();
+    }
+
+    private static String valueToken(SqlParameters parameters, int index) {
+        int start = parameters.getValueStart(index);
+        int end = parameters.getValueEnd(index);
+        if (end - start >= 2 && parameters.getSource().charAt(start) == '\'' && parameters.getSource().charAt(end - 1) == '\'') {
+            start++;
+            end--;
+        }
+        if (end <= start || end - start > MAX_VALUE_TOKEN_LENGTH) {
+            return null;
+        }
+        return parameters.getSource().subSequence(start, end).toString().toLowerCase();
+    }
+
+    private static String stripQuotes(String text) {
+        if (text.length() >= 2 && text.charAt(0) == '\'' && text.charAt(text.length() - 1) == '\'') {
+            return text.substring(1, text.length() - 1);
+        }
+        return text;
+    }
+
+    /**
+     * 分组键：模板按引用比较（模板由缓存共享），语句ID按值比较
+     */
+    private static final class GroupKey {
+        final SqlTemplate template;
+        final String mapperId;
+
+        GroupKey(SqlTemplate template, String mapperId) {
+            this.template = template;
+            this.mapperId = mapperId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof GroupKey)) return false;
+            GroupKey other = (GroupKey) o;
+            return template == other.template && Objects.equals(mapperId, other.mapperId);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(template) * 31 + Objects.hashCode(mapperId);
+        }
+    }
+
+    private static final class Group {
+        final String searchText;
+        final SequenceList sequences = new SequenceList();
+
+        Group(String searchText) {
+            this.searchText = searchText;
+        }
+    }
+
+    /**
+     * 升序的序号列表，头部淘汰时只移动起始位置，过半时再压缩
+     */
+    private static final class SequenceList {
+        private long[] values = new long[4];
+        private int start;
+        private int end;
+
+        void add(long value) {
+            if (end == values.length) {
+                if (start > values.length / 2) {
+                    compact();
+                } else {
+                    values = Arrays.copyOf(values, values.length << 1);
+                }
+            }
+            values[end++] = value;
+        }
+
+        long last() {
+            return end > start ? values[end - 1] : -1;
+        }
+
+        boolean isEmpty() {
+            return end == start;
+        }
+
+        int size() {
+            return end - start;
+        }
+
+        boolean contains(long value) {
+            return Arrays.binarySearch(values, start, end, value) >= 0;
+        }
+
+        void dropBefore(long firstValid) {
+            int from = lowerBound(firstValid);
+            start = from;
+            if (start == end) {
+                start = 0;
+                end = 0;
+            } else if (start > values.length / 2) {
+                compact();
+            }
+        }
+
+        void addAll(SequenceList other, long firstValid) {
+            int from = other.lowerBound(firstValid);
+            int count = other.end - from;
+            if (count <= 0) {
+                return;
+            }
+            if (end + count > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length << 1, end + count));
+            }
+            System.arraycopy(other.values, from, values, end, count);
+            end += count;
+        }
+
+        void addAll(long[] sequences, int count) {
+            if (end + count > values.length) {
+                values = Arrays.copyOf(values, Math.max(values.length << 1, end + count));
+            }
+            System.arraycopy(sequences, 0, values, end, count);
+            end += count;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOfRange(values, start, end);
+        }
+
+        long[] toArray(long firstValid) {
+            return Arrays.copyOfRange(values, lowerBound(firstValid), end);
+        }
+
+        private int lowerBound(long value) {
+            int from = Arrays.binarySearch(values, start, end, value);
+            return from >= 0 ? from : -from - 1;
+        }
+
+        private void compact() {
+            System.arraycopy(values, start, values, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 固定容量的环形日志存储
+ * <p>
+ * 每条记录按追加顺序分配一个递增的序号，写入第 {@code 序号 % 容量} 个槽位；存满后新记录直接覆盖最旧的记录，
+ * 追加和淘汰都是 O(1)，不需要像 {@code ArrayList.remove(0)} 那样移动数组。
+ * <p>
+ * 写入方之间用一把只保护单个槽位写入的短锁串行化；读取方完全不加锁：
+ * 每个槽位旁边记录其中元素的序号，写入时先把序号置为-1，再写元素和新序号，
+ * 读取时在读元素前后各检查一次序号，序号不符说明该记录已被覆盖，直接跳过。
+ */
+public final class StatementStore<T> {
+
+    /**
+     * 遍历回调，同时提供记录的序号
+     */
+    public interface Visitor<T> {
+        /**
+         * @return false 表示停止遍历
+         */
+        boolean visit(long sequence, T item);
+    }
+
+    private final int capacity;
+    private final AtomicReferenceArray<T> items;
+    private final AtomicLongArray sequences;
+    private final Object writeLock = new Object();
+    // 下一条记录的序号
+    private volatile long nextSequence;
+    // 清空时的序号，小于它的记录视为已删除
+    private volatile long clearedBefore;
+
+    public StatementStore(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.items = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, -1);
+        }
+    }
+
+    /**
+     * 追加一条记录，存满时覆盖最旧的记录
+     * @return 记录的序号
+     */
+    public long append(T item) {
+        synchronized (writeLock) {
+            long sequence = nextSequence;
+            int slot = slotOf(sequence);
+            sequences.set(slot, -1);
+            items.set(slot, item);
+            sequences.set(slot, sequence);
+            nextSequence = sequence + 1;
+            return sequence;
+        }
+    }
+
+    /**
+     * 按序号读取记录，已被覆盖或清空时返回null
+     */
+    @Nullable
+    public T get(long sequence) {
+        if (sequence < firstSequence() || sequence >= nextSequence) {
+            return null;
+        }
+        int slot = slotOf(sequence);
+        if (sequences.get(slot) != sequence) {
+            return null;
+        }
+        T item = items.get(slot);
+        return sequences.get(slot) == sequence ? item : null;
+    }
+
+    /**
+     * 按追加顺序遍历调用时刻的快照，遍历期间写入方不会被阻塞，期间被覆盖的记录会被跳过
+     */
+    public void forEach(Visitor<? super T> visitor) {
+        long end = nextSequence;
+        for (long sequence = firstSequence(end); sequence < end; sequence++) {
+            T item = get(sequence);
+            if (item != null && !visitor.visit(sequence, item)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 最旧的仍保留的记录序号
+     */
+    public long firstSequence() {
+        return firstSequence(nextSequence);
+    }
+
+    private long firstSequence(long end) {
+        return Math.max(end - capacity, clearedBefore);
+    }
+
+    /**
+     * 下一条记录将使用的序号
+     */
+    public long nextSequence() {
+        return nextSequence;
+    }
+
+    public int size() {
+        long end = nextSequence;
+        return (int) (end - firstSequence(end));
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * 清空所有记录，序号继续递增
+     */
+    public void clear() {
+        synchronized (writeLock) {
+            clearedBefore = nextSequence;
+            for (int i = 0; i < capacity; i++) {
+                sequences.set(i, -1);
+                items.set(i, null);
+            }
+        }
+    }
+
+    private int slotOf(long sequence) {
+        return (int) (sequence % capacity);
+    }
+}
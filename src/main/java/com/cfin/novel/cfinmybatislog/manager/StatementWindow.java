@@ -0,0 +1,167 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+/**
+ * 文档中当前显示的一段连续语句及其起始偏移
+ * <p>
+ * 文档只包含有限数量的完整语句（一条SQL条目及其后的参数、完整SQL、耗时等条目），
+ * 这里按顺序记录每条语句头条目在日志存储中的序号和它在文档中的起始偏移，用于整条语句地裁剪和翻页。
+ * 偏移以 {@code 存储值 + shift} 表示：在文档开头插入或删除内容时只需调整 {@code shift}，不必逐个修改。
+ * <p>
+ * 只在EDT中使用。
+ */
+final class StatementWindow {
+
+    private long[] heads = new long[64];
+    private int[] starts = new int[64];
+    // 有效数据位于 [first, first + count)，两端都可能增删
+    private int first = 32;
+    private int count;
+    private int shift;
+
+    int size() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    void clear() {
+        first = heads.length / 2;
+        count = 0;
+        shift = 0;
+    }
+
+    long head(int index) {
+        return heads[first + index];
+    }
+
+    long firstHead() {
+        return heads[first];
+    }
+
+    long lastHead() {
+        return heads[first + count - 1];
+    }
+
+    int startOffset(int index) {
+        return starts[first + index] + shift;
+    }
+
+    /**
+     * 第 {@code index} 条语句的结束偏移（不含），最后一条语句结束于文档末尾
+     */
+    int endOffset(int index, int documentLength) {
+        return index + 1 < count ? startOffset(index + 1) : documentLength;
+    }
+
+    /**
+     * 在末尾追加一条从 {@code offset} 开始的语句
+     */
+    void addLast(long head, int offset) {
+        if (first + count == heads.length) {
+            makeRoom(false);
+        }
+        heads[first + count] = head;
+        starts[first + count] = offset - shift;
+        count++;
+    }
+
+    /**
+     * 在文档开头插入了长度为 {@code length} 的一页语句后调用，{@code offsets} 为它们在插入后文档中的偏移
+     */
+    void prepend(long[] pageHeads, int[] offsets, int pageCount, int length) {
+        shift += length;
+        for (int i = pageCount - 1; i >= 0; i--) {
+            if (first == 0) {
+                makeRoom(true);
+            }
+            first--;
+            heads[first] = pageHeads[i];
+            starts[first] = offsets[i] - shift;
+            count++;
+        }
+    }
+
+    /**
+     * 移除开头的 {@code n} 条语句，调用方需同时从文档开头删除返回的字符数
+     * @return 被移除语句占用的字符数
+     */
+    int removeFirst(int n, int documentLength) {
+        int removed = endOffset(n - 1, documentLength);
+        first += n;
+        count -= n;
+        shift -= removed;
+        if (count == 0) {
+            clear();
+        }
+        return removed;
+    }
+
+    /**
+     * 移除末尾的 {@code n} 条语句，调用方需同时删除从返回偏移到文档末尾的内容
+     * @return 被移除的第一条语句的起始偏移
+     */
+    int removeLast(int n) {
+        int offset = startOffset(count - n);
+        count -= n;
+        if (count == 0) {
+            clear();
+        }
+        return offset;
+    }
+
+    /**
+     * 查找包含文档偏移 {@code offset} 的语句
+     * @return 语句下标，偏移位于第一条语句之前或窗口为空时返回-1
+     */
+    int indexAtOffset(int offset) {
+        int low = 0;
+        int high = count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (startOffset(mid) <= offset) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 查找语句头序号为 {@code head} 的语句
+     * @return 语句下标，不在窗口中时返回-1
+     */
+    int indexOfHead(long head) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long value = heads[first + mid];
+            if (value < head) {
+                low = mid + 1;
+            } else if (value > head) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private void makeRoom(boolean atFront) {
+        int capacity = Math.max(64, count * 2 + 64);
+        long[] newHeads = new long[capacity];
+        int[] newStarts = new int[capacity];
+        // 往哪一端扩展就在哪一端多留空间
+        int newFirst = atFront ? capacity - count - 32 : 32;
+        System.arraycopy(heads, first, newHeads, newFirst, count);
+        System.arraycopy(starts, first, newStarts, newFirst, count);
+        heads = newHeads;
+        starts = newStarts;
+        first = newFirst;
+    }
+}
@@ -0,0 +1,150 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+import javax.swing.text.BadLocationException;
+import javax.swing.text.StyledDocument;
+import java.util.Arrays;
+
+/**
+ * 一批带样式名的文本片段，可以在任意线程中生成，再在EDT中一次性插入文档
+ * <p>
+ * 只保存文本和样式名，插入时才从目标文档取出同名样式，后台线程不接触文档。
+ * 相邻的同样式片段会被合并。另外按条目记录其起始位置，供调用方维护语句窗口。
+ * <p>
+ * 一条SQL执行的片段生成后缓存在记录上（{@link SqlStatementRecord#getRendered()}），之后不再修改，
+ * 显示时用 {@link #append(StyledRuns)} 复制到一批片段中。
+ */
+final class StyledRuns {
+    private final StringBuilder text = new StringBuilder(256);
+    private String[] styles = new String[16];
+    // 每个片段的结束位置（不含）
+    private int[] ends = new int[16];
+    private int count;
+
+    // 条目标记：序号、在文本中的起始位置
+    private long[] markSequences = new long[8];
+    private int[] markOffsets = new int[8];
+    private int markCount;
+
+    /**
+     * 追加一段使用 {@code styleName} 样式的文本
+     */
+    void add(String fragment, String styleName) {
+        add(fragment, 0, fragment.length(), styleName);
+    }
+
+    /**
+     * 追加 {@code source} 中 [start, end) 的文本，不创建子字符串
+     */
+    void add(CharSequence source, int start, int end, String styleName) {
+        if (start >= end) {
+            return;
+        }
+        text.append(source, start, end);
+        if (count > 0 && styles[count - 1].equals(styleName)) {
+            ends[count - 1] = text.length();
+            return;
+        }
+        if (count == styles.length) {
+            styles = Arrays.copyOf(styles, count * 2);
+            ends = Arrays.copyOf(ends, count * 2);
+        }
+        styles[count] = styleName;
+        ends[count] = text.length();
+        count++;
+    }
+
+    /**
+     * 追加另一批片段的全部文本和样式，不复制其条目标记
+     */
+    void append(StyledRuns other) {
+        for (int i = 0; i < other.count; i++) {
+            add(other.text, other.runStart(i), other.ends[i], other.styles[i]);
+        }
+    }
+
+    /**
+     * 释放未使用的容量，用于缓存不再追加的片段
+     */
+    StyledRuns trimToSize() {
+        text.trimToSize();
+        if (count < styles.length) {
+            styles = Arrays.copyOf(styles, count);
+            ends = Arrays.copyOf(ends, count);
+        }
+        if (markCount < markSequences.length) {
+            markSequences = Arrays.copyOf(markSequences, markCount);
+            markOffsets = Arrays.copyOf(markOffsets, markCount);
+        }
+        return this;
+    }
+
+    /**
+     * 记录接下来追加的文本属于序号为 {@code sequence} 的条目
+     */
+    void mark(long sequence) {
+        if (markCount == markSequences.length) {
+            markSequences = Arrays.copyOf(markSequences, markCount * 2);
+            markOffsets = Arrays.copyOf(markOffsets, markCount * 2);
+        }
+        markSequences[markCount] = sequence;
+        markOffsets[markCount] = text.length();
+        markCount++;
+    }
+
+    int length() {
+        return text.length();
+    }
+
+    boolean isEmpty() {
+        return text.length() == 0;
+    }
+
+    int runCount() {
+        return count;
+    }
+
+    int runStart(int index) {
+        return index == 0 ? 0 : ends[index - 1];
+    }
+
+    int runEnd(int index) {
+        return ends[index];
+    }
+
+    String runStyle(int index) {
+        return styles[index];
+    }
+
+    void getChars(int start, int end, char[] target, int targetOffset) {
+        text.getChars(start, end, target, targetOffset);
+    }
+
+    int markCount() {
+        return markCount;
+    }
+
+    long markSequence(int index) {
+        return markSequences[index];
+    }
+
+    int markOffset(int index) {
+        return markOffsets[index];
+    }
+
+    /**
+     * 把全部片段插入到文档的 {@code offset} 处；{@link LogDocument} 一次批量插入，其他文档逐段插入
+     */
+    void insertInto(StyledDocument doc, int offset) throws BadLocationException {
+        if (isEmpty()) {
+            return;
+        }
+        if (doc instanceof LogDocument) {
+            ((LogDocument) doc).insertRuns(offset, this);
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int start = runStart(i);
+            doc.insertString(offset + start, text.substring(start, ends[i]), doc.getStyle(styles[i]));
+        }
+    }
+}
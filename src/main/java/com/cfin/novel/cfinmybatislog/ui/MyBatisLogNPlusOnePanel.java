@@ -0,0 +1,268 @@
+package com.cfin.novel.cfinmybatislog.ui;
+
+import com.cfin.novel.cfinmybatislog.manager.MyBatisLogManager;
+import com.cfin.novel.cfinmybatislog.manager.NPlusOneFindings;
+import com.cfin.novel.cfinmybatislog.manager.SqlStatementRecord;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 固定的 "N+1 Queries" 标签页：显示最近的可疑 N+1，双击或回车跳转到日志中该轮重复的第一次执行
+ * <p>
+ * 不受日志过滤条件影响。每秒检查一次 {@link NPlusOneFindings} 的版本号，有变化时才重新读取列表；标签页不可见时不刷新。
+ */
+public class MyBatisLogNPlusOnePanel extends JPanel implements Disposable {
+    private static final long serialVersionUID = 1L;
+    private static final int REFRESH_INTERVAL_MS = 1000;
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final int COL_COUNT = 0;
+    private static final int COL_STARTED = 1;
+    private static final int COL_MAPPER = 2;
+    private static final int COL_THREAD = 3;
+    private static final int COL_SQL = 4;
+    private static final int COL_PARENT = 5;
+    private static final String[] COLUMN_NAMES = {"Executions", "Started", "Mapper", "Thread", "SQL", "Parent"};
+
+    private final Project project;
+    private final NPlusOneFindings findings;
+    private final Runnable showLog;
+    private final FindingsTableModel model = new FindingsTableModel();
+    private final JBTable table;
+    private final JLabel summaryLabel = new JLabel();
+    private final Timer refreshTimer;
+    private long shownVersion = -1;
+
+    /**
+     * @param showLog 切换到日志标签页
+     */
+    public MyBatisLogNPlusOnePanel(Project project, Runnable showLog) {
+        super(new BorderLayout(0, 0));
+        this.project = project;
+        this.findings = NPlusOneFindings.getInstance(project);
+        this.showLog = showLog;
+        setBorder(JBUI.Borders.empty(8));
+
+        table = new JBTable(model);
+        // 默认按报告顺序显示，最新的在前
+        table.setRowSorter(new TableRowSorter<>(model));
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(COL_COUNT).setPreferredWidth(JBUI.scale(70));
+        table.getColumnModel().getColumn(COL_STARTED).setPreferredWidth(JBUI.scale(90));
+        table.getColumnModel().getColumn(COL_MAPPER).setPreferredWidth(JBUI.scale(240));
+        table.getColumnModel().getColumn(COL_THREAD).setPreferredWidth(JBUI.scale(120));
+        table.getColumnModel().getColumn(COL_SQL).setPreferredWidth(JBUI.scale(420));
+        table.getColumnModel().getColumn(COL_PARENT).setPreferredWidth(JBUI.scale(420));
+        table.getColumnModel().getColumn(COL_SQL).setCellRenderer(new SqlRenderer(false));
+        table.getColumnModel().getColumn(COL_PARENT).setCellRenderer(new SqlRenderer(true));
+        installActions();
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        toolbar.setOpaque(false);
+        toolbar.setBorder(JBUI.Borders.emptyBottom(8));
+        JButton resetButton = new JButton("Reset", AllIcons.Actions.GC);
+        resetButton.setToolTipText("Clear the N+1 list");
+        resetButton.addActionListener(e -> {
+            findings.reset();
+            refresh();
+        });
+        toolbar.add(resetButton);
+        summaryLabel.setForeground(UIUtil.getContextHelpForeground());
+        toolbar.add(summaryLabel);
+
+        add(toolbar, BorderLayout.NORTH);
+        add(new JBScrollPane(table), BorderLayout.CENTER);
+
+        refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> refresh());
+        refreshTimer.start();
+    }
+
+    private void installActions() {
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && SwingUtilities.isLeftMouseButton(e)) {
+                    reveal(selectedChild());
+                }
+            }
+        });
+        table.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "revealStatement");
+        table.getActionMap().put("revealStatement", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                reveal(selectedChild());
+            }
+        });
+
+        JPopupMenu menu = new JPopupMenu();
+        JMenuItem showItem = new JMenuItem("Show in Log");
+        showItem.addActionListener(e -> reveal(selectedChild()));
+        menu.add(showItem);
+        JMenuItem showParentItem = new JMenuItem("Show Parent in Log");
+        showParentItem.addActionListener(e -> {
+            NPlusOneFindings.Finding finding = selectedFinding();
+            reveal(finding != null ? finding.getParent() : null);
+        });
+        menu.add(showParentItem);
+        JMenuItem copyItem = new JMenuItem("Copy SQL", AllIcons.Actions.Copy);
+        copyItem.addActionListener(e -> {
+            SqlStatementRecord record = selectedChild();
+            if (record != null) {
+                CopyPasteManager.getInstance().setContents(new StringSelection(completeSqlOf(record)));
+            }
+        });
+        menu.add(copyItem);
+        table.setComponentPopupMenu(menu);
+    }
+
+    private NPlusOneFindings.Finding selectedFinding() {
+        int row = table.getSelectedRow();
+        return row < 0 ? null : model.getFinding(table.convertRowIndexToModel(row));
+    }
+
+    private SqlStatementRecord selectedChild() {
+        NPlusOneFindings.Finding finding = selectedFinding();
+        return finding != null ? finding.getChild() : null;
+    }
+
+    private void reveal(SqlStatementRecord record) {
+        if (record == null) {
+            return;
+        }
+        showLog.run();
+        if (!MyBatisLogManager.getInstance(project).revealStatement(record.getSequence())) {
+            summaryLabel.setText("The statement is no longer in the log or is hidden by the current filter");
+        }
+    }
+
+    private String completeSqlOf(SqlStatementRecord record) {
+        return record.hasParameters() ? MyBatisLogManager.getInstance(project).getCompleteSql(record) : record.getSql();
+    }
+
+    private void refresh() {
+        if (!isShowing()) {
+            return;
+        }
+        long version = findings.getVersion();
+        if (version == shownVersion) {
+            return;
+        }
+        NPlusOneFindings.Finding selected = selectedFinding();
+        model.setFindings(findings.getFindings());
+        shownVersion = version;
+        // 列表整体替换后恢复之前选中的结果
+        int index = selected != null ? model.indexOf(selected) : -1;
+        if (index >= 0) {
+            int row = table.convertRowIndexToView(index);
+            table.getSelectionModel().setSelectionInterval(row, row);
+        }
+        summaryLabel.setText(findings.getFindingCount() + " suspected N+1 queries, showing the latest " + model.getRowCount());
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+    }
+
+    private static final class FindingsTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private List<NPlusOneFindings.Finding> findings = new ArrayList<>();
+
+        void setFindings(List<NPlusOneFindings.Finding> findings) {
+            this.findings = findings;
+            fireTableDataChanged();
+        }
+
+        NPlusOneFindings.Finding getFinding(int row) {
+            return findings.get(row);
+        }
+
+        int indexOf(NPlusOneFindings.Finding finding) {
+            return findings.indexOf(finding);
+        }
+
+        @Override
+        public int getRowCount() {
+            return findings.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == COL_COUNT ? Integer.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            NPlusOneFindings.Finding finding = findings.get(row);
+            SqlStatementRecord child = finding.getChild();
+            switch (column) {
+                case COL_COUNT:
+                    return finding.getCount();
+                case COL_STARTED:
+                    return TIME_FORMATTER.format(Instant.ofEpochMilli(child.getStartMillis()));
+                case COL_MAPPER:
+                    return child.getMapperId() != null ? child.getMapperId() : "";
+                case COL_THREAD:
+                    return finding.getThreadName();
+                case COL_SQL:
+                    return child.getSql();
+                default:
+                    return finding.getParent() != null ? finding.getParent().getSql() : "";
+            }
+        }
+    }
+
+    /**
+     * SQL和父查询列显示模板，悬停时显示带参数的完整SQL
+     */
+    private final class SqlRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 1L;
+        private final boolean parent;
+
+        SqlRenderer(boolean parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            NPlusOneFindings.Finding finding = model.getFinding(table.convertRowIndexToModel(row));
+            SqlStatementRecord record = parent ? finding.getParent() : finding.getChild();
+            setToolTipText(record != null ? completeSqlOf(record) : null);
+            return this;
+        }
+    }
+}
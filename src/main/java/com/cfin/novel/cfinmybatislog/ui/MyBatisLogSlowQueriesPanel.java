@@ -0,0 +1,294 @@
+package com.cfin.novel.cfinmybatislog.ui;
+
+import com.cfin.novel.cfinmybatislog.manager.MyBatisLogManager;
+import com.cfin.novel.cfinmybatislog.manager.SlowQueryTracker;
+import com.cfin.novel.cfinmybatislog.manager.SqlStatementRecord;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.ide.CopyPasteManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTextField;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.awt.datatransfer.StringSelection;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 固定的 "Slow Queries" 标签页：显示本次会话中最慢的执行，双击或回车跳转到日志中的该语句
+ * <p>
+ * 工具栏中可以编辑全局阈值和按 Mapper 的阈值（{@code 语句ID或命名空间=毫秒}，以分号分隔），应用后立即生效。
+ * <p>
+ * 每秒检查一次 {@link SlowQueryTracker} 的版本号，有变化时才重新读取列表（最多 {@code TOP_K} 条）；标签页不可见时不刷新。
+ */
+public class MyBatisLogSlowQueriesPanel extends JPanel implements Disposable {
+    private static final long serialVersionUID = 1L;
+    private static final int REFRESH_INTERVAL_MS = 1000;
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static final int COL_TIME = 0;
+    private static final int COL_STARTED = 1;
+    private static final int COL_MAPPER = 2;
+    private static final int COL_THREAD = 3;
+    private static final int COL_SQL = 4;
+    private static final String[] COLUMN_NAMES = {"Time (ms)", "Started", "Mapper", "Thread", "SQL"};
+
+    private final Project project;
+    private final SlowQueryTracker slowQueries;
+    private final Runnable showLog;
+    private final SlowQueriesTableModel model = new SlowQueriesTableModel();
+    private final JBTable table;
+    private final JLabel summaryLabel = new JLabel();
+    private final JBTextField thresholdField = new JBTextField(5);
+    private final JBTextField mapperThresholdsField = new JBTextField(30);
+    private final Timer refreshTimer;
+    private long shownVersion = -1;
+
+    /**
+     * @param showLog 切换到日志标签页
+     */
+    public MyBatisLogSlowQueriesPanel(Project project, Runnable showLog) {
+        super(new BorderLayout(0, 0));
+        this.project = project;
+        this.slowQueries = SlowQueryTracker.getInstance(project);
+        this.showLog = showLog;
+        setBorder(JBUI.Borders.empty(8));
+
+        table = new JBTable(model);
+        TableRowSorter<SlowQueriesTableModel> sorter = new TableRowSorter<>(model);
+        sorter.setSortKeys(Collections.singletonList(new RowSorter.SortKey(COL_TIME, SortOrder.DESCENDING)));
+        table.setRowSorter(sorter);
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.getColumnModel().getColumn(COL_TIME).setPreferredWidth(JBUI.scale(70));
+        table.getColumnModel().getColumn(COL_STARTED).setPreferredWidth(JBUI.scale(90));
+        table.getColumnModel().getColumn(COL_MAPPER).setPreferredWidth(JBUI.scale(240));
+        table.getColumnModel().getColumn(COL_THREAD).setPreferredWidth(JBUI.scale(120));
+        table.getColumnModel().getColumn(COL_SQL).setPreferredWidth(JBUI.scale(600));
+        table.getColumnModel().getColumn(COL_SQL).setCellRenderer(new SqlRenderer());
+        installActions();
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        toolbar.setOpaque(false);
+        toolbar.setBorder(JBUI.Borders.emptyBottom(8));
+        JButton resetButton = new JButton("Reset", AllIcons.Actions.GC);
+        resetButton.setToolTipText("Clear the slow query list");
+        resetButton.addActionListener(e -> {
+            slowQueries.reset();
+            refresh();
+        });
+        toolbar.add(resetButton);
+        installThresholdEditor(toolbar);
+        summaryLabel.setForeground(UIUtil.getContextHelpForeground());
+        toolbar.add(summaryLabel);
+
+        add(toolbar, BorderLayout.NORTH);
+        add(new JBScrollPane(table), BorderLayout.CENTER);
+
+        refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> refresh());
+        refreshTimer.start();
+    }
+
+    private void installThresholdEditor(JPanel toolbar) {
+        thresholdField.setText(String.valueOf(slowQueries.getThresholdMillis()));
+        thresholdField.setToolTipText("Global slow query threshold in milliseconds");
+        mapperThresholdsField.setText(slowQueries.getMapperThresholds());
+        mapperThresholdsField.putClientProperty("JTextField.placeholderText", "UserMapper.selectById=200; com.example.mapper=500");
+        mapperThresholdsField.setToolTipText("Per-mapper thresholds in milliseconds, separated by ';'. "
+                + "A statement ID takes precedence over its namespace, and namespaces match upwards.");
+        JButton applyButton = new JButton("Apply");
+        applyButton.setToolTipText("Save the thresholds; they apply to new executions");
+        applyButton.addActionListener(e -> applyThresholds());
+        // 在输入框中按回车同样应用
+        thresholdField.addActionListener(e -> applyThresholds());
+        mapperThresholdsField.addActionListener(e -> applyThresholds());
+
+        toolbar.add(new JLabel("Threshold (ms):"));
+        toolbar.add(thresholdField);
+        toolbar.add(new JLabel("Per mapper:"));
+        toolbar.add(mapperThresholdsField);
+        toolbar.add(applyButton);
+    }
+
+    private void applyThresholds() {
+        long threshold;
+        try {
+            threshold = Long.parseLong(thresholdField.getText().trim());
+        } catch (NumberFormatException e) {
+            summaryLabel.setText("Invalid threshold: " + thresholdField.getText().trim());
+            return;
+        }
+        try {
+            slowQueries.setThresholds(threshold, mapperThresholdsField.getText());
+        } catch (IllegalArgumentException e) {
+            summaryLabel.setText(e.getMessage());
+            return;
+        }
+        thresholdField.setText(String.valueOf(slowQueries.getThresholdMillis()));
+        mapperThresholdsField.setText(slowQueries.getMapperThresholds());
+        refresh();
+    }
+
+    private void installActions() {
+        table.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && SwingUtilities.isLeftMouseButton(e)) {
+                    revealSelected();
+                }
+            }
+        });
+        table.getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "revealStatement");
+        table.getActionMap().put("revealStatement", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                revealSelected();
+            }
+        });
+
+        JPopupMenu menu = new JPopupMenu();
+        JMenuItem showItem = new JMenuItem("Show in Log");
+        showItem.addActionListener(e -> revealSelected());
+        menu.add(showItem);
+        JMenuItem copyItem = new JMenuItem("Copy SQL", AllIcons.Actions.Copy);
+        copyItem.addActionListener(e -> {
+            SqlStatementRecord record = selectedRecord();
+            if (record != null) {
+                CopyPasteManager.getInstance().setContents(new StringSelection(completeSqlOf(record)));
+            }
+        });
+        menu.add(copyItem);
+        table.setComponentPopupMenu(menu);
+    }
+
+    private SqlStatementRecord selectedRecord() {
+        int row = table.getSelectedRow();
+        return row < 0 ? null : model.getRecord(table.convertRowIndexToModel(row));
+    }
+
+    private void revealSelected() {
+        SqlStatementRecord record = selectedRecord();
+        if (record == null) {
+            return;
+        }
+        showLog.run();
+        if (!MyBatisLogManager.getInstance(project).revealStatement(record.getSequence())) {
+            summaryLabel.setText("The statement is no longer in the log or is hidden by the current filter");
+        }
+    }
+
+    private String completeSqlOf(SqlStatementRecord record) {
+        return record.hasParameters() ? MyBatisLogManager.getInstance(project).getCompleteSql(record) : record.getSql();
+    }
+
+    private void refresh() {
+        if (!isShowing()) {
+            return;
+        }
+        long version = slowQueries.getVersion();
+        if (version == shownVersion) {
+            return;
+        }
+        SqlStatementRecord selected = selectedRecord();
+        model.setRecords(slowQueries.getSlowest());
+        shownVersion = version;
+        // 列表整体替换后恢复之前选中的执行
+        int index = selected != null ? model.indexOf(selected) : -1;
+        if (index >= 0) {
+            int row = table.convertRowIndexToView(index);
+            table.getSelectionModel().setSelectionInterval(row, row);
+        }
+        summaryLabel.setText(slowQueries.getSlowCount() + " slow queries (threshold " + slowQueries.getThresholdMillis()
+                + " ms), showing the slowest " + model.getRowCount());
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+    }
+
+    private static final class SlowQueriesTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private List<SqlStatementRecord> records = new ArrayList<>();
+
+        void setRecords(List<SqlStatementRecord> records) {
+            this.records = records;
+            fireTableDataChanged();
+        }
+
+        SqlStatementRecord getRecord(int row) {
+            return records.get(row);
+        }
+
+        int indexOf(SqlStatementRecord record) {
+            return records.indexOf(record);
+        }
+
+        @Override
+        public int getRowCount() {
+            return records.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return column == COL_TIME ? Long.class : String.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            SqlStatementRecord record = records.get(row);
+            switch (column) {
+                case COL_TIME:
+                    return record.getLatencyMillis();
+                case COL_STARTED:
+                    return TIME_FORMATTER.format(Instant.ofEpochMilli(record.getStartMillis()));
+                case COL_MAPPER:
+                    return record.getMapperId() != null ? record.getMapperId() : "";
+                case COL_THREAD:
+                    return record.getThreadName() != null ? record.getThreadName() : "";
+                default:
+                    return record.getSql();
+            }
+        }
+    }
+
+    /**
+     * SQL列显示模板，悬停时显示带参数的完整SQL
+     */
+    private final class SqlRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected,
+                                                       boolean hasFocus, int row, int column) {
+            super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
+            setToolTipText(completeSqlOf(model.getRecord(table.convertRowIndexToModel(row))));
+            return this;
+        }
+    }
+}
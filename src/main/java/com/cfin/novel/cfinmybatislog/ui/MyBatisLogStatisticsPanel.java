@@ -0,0 +1,279 @@
+package com.cfin.novel.cfinmybatislog.ui;
+
+import com.cfin.novel.cfinmybatislog.manager.SqlStatistics;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.UIUtil;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableRowSorter;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * "Statistics" 标签页：按归一化语句或 Mapper 语句ID显示执行次数、总耗时、分位数耗时和行数，可按任意列排序
+ * <p>
+ * 重复执行次数和平均每个参数组合的执行次数用于发现可以缓存的查询。
+ * <p>
+ * 每秒检查一次 {@link SqlStatistics} 的版本号，只重新读取有变化的分组，不扫描历史日志；标签页不可见时不刷新。
+ */
+public class MyBatisLogStatisticsPanel extends JPanel implements Disposable {
+    private static final long serialVersionUID = 1L;
+    private static final int REFRESH_INTERVAL_MS = 1000;
+
+    private static final int COL_KEY = 0;
+    private static final int COL_COUNT = 1;
+    private static final int COL_TOTAL = 2;
+    private static final int COL_MEAN = 3;
+    private static final int COL_P50 = 4;
+    private static final int COL_P95 = 5;
+    private static final int COL_P99 = 6;
+    private static final int COL_MAX = 7;
+    private static final int COL_ROWS = 8;
+    private static final int COL_DUPLICATES = 9;
+    private static final int COL_DISTINCT = 10;
+    private static final int COL_PER_DISTINCT = 11;
+    private static final String[] COLUMN_NAMES = {
+            "Statement", "Count", "Total (ms)", "Mean (ms)", "P50 (ms)", "P95 (ms)", "P99 (ms)", "Max (ms)", "Rows",
+            "Duplicates", "Distinct Params", "Exec / Distinct"
+    };
+
+    private final SqlStatistics statistics;
+    private final StatisticsTableModel model = new StatisticsTableModel();
+    private final JBTable table;
+    private final JComboBox<String> groupByCombo = new JComboBox<>(new String[]{"By statement", "By mapper"});
+    private final JLabel summaryLabel = new JLabel();
+    private final Timer refreshTimer;
+    // 表格已反映到的统计版本号，-1表示需要重新载入
+    private long shownVersion = -1;
+
+    public MyBatisLogStatisticsPanel(Project project) {
+        super(new BorderLayout(0, 0));
+        this.statistics = SqlStatistics.getInstance(project);
+        setBorder(JBUI.Borders.empty(8));
+
+        table = new JBTable(model);
+        TableRowSorter<StatisticsTableModel> sorter = new TableRowSorter<>(model);
+        // 默认按总耗时降序，最耗数据库时间的语句排在最前
+        sorter.setSortKeys(Collections.singletonList(new RowSorter.SortKey(COL_TOTAL, SortOrder.DESCENDING)));
+        sorter.setSortsOnUpdates(true);
+        table.setRowSorter(sorter);
+        table.setDefaultRenderer(Long.class, new NumberRenderer());
+        table.setDefaultRenderer(Double.class, new NumberRenderer());
+        table.getColumnModel().getColumn(COL_KEY).setPreferredWidth(JBUI.scale(480));
+        table.getColumnModel().getColumn(COL_KEY).setCellRenderer(new KeyRenderer());
+        table.getTableHeader().setToolTipText("Duplicates: same complete SQL within "
+                + "1 s; Distinct Params: estimated number of distinct parameter sets (about 3% error)");
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT, 8, 0));
+        toolbar.setOpaque(false);
+        toolbar.setBorder(JBUI.Borders.emptyBottom(8));
+        groupByCombo.addActionListener(e -> reload());
+        toolbar.add(groupByCombo);
+        JButton resetButton = new JButton("Reset", AllIcons.Actions.GC);
+        resetButton.setToolTipText("Clear all statistics");
+        resetButton.addActionListener(e -> {
+            statistics.reset();
+            reload();
+        });
+        toolbar.add(resetButton);
+        summaryLabel.setForeground(UIUtil.getContextHelpForeground());
+        summaryLabel.setToolTipText("Percentiles are histogram bucket upper bounds, within 12.5% of the exact value");
+        toolbar.add(summaryLabel);
+
+        add(toolbar, BorderLayout.NORTH);
+        add(new JBScrollPane(table), BorderLayout.CENTER);
+
+        refreshTimer = new Timer(REFRESH_INTERVAL_MS, e -> refresh());
+        refreshTimer.start();
+    }
+
+    /**
+     * 切换分组维度或重置后，清空表格并在下一次刷新时重新载入
+     */
+    private void reload() {
+        model.clear();
+        // 只改表头文字，不触发结构变化，保留列宽、渲染器和排序
+        table.getColumnModel().getColumn(COL_KEY).setHeaderValue(isByMapper() ? "Mapper" : COLUMN_NAMES[COL_KEY]);
+        table.getTableHeader().repaint();
+        shownVersion = -1;
+        refresh();
+    }
+
+    private boolean isByMapper() {
+        return groupByCombo.getSelectedIndex() == 1;
+    }
+
+    private void refresh() {
+        if (!isShowing()) {
+            return;
+        }
+        // 先读版本号再读分组，读取期间完成的记录会使版本号变化，下次刷新时补上
+        long version = statistics.getVersion();
+        if (version == shownVersion) {
+            return;
+        }
+        model.update(statistics.getGroups(isByMapper()));
+        shownVersion = version;
+        summaryLabel.setText(model.getRowCount() + " groups, " + model.totalCount() + " executions");
+    }
+
+    @Override
+    public void dispose() {
+        refreshTimer.stop();
+    }
+
+    /**
+     * 表格中的一行：分组及其上次刷新时读取的各项数值，排序时数值不会在比较过程中变化
+     */
+    private static final class Row {
+        final SqlStatistics.Group group;
+        final Object[] values = new Object[COLUMN_NAMES.length];
+        // 读取数值时分组的更新戳
+        long stamp;
+
+        Row(SqlStatistics.Group group) {
+            this.group = group;
+            values[COL_KEY] = group.getKey();
+            read();
+        }
+
+        void read() {
+            stamp = group.getStamp();
+            values[COL_COUNT] = group.getCount();
+            values[COL_TOTAL] = group.getTotalMillis();
+            values[COL_MEAN] = group.getMeanMillis();
+            values[COL_P50] = group.getPercentileMillis(0.50);
+            values[COL_P95] = group.getPercentileMillis(0.95);
+            values[COL_P99] = group.getPercentileMillis(0.99);
+            values[COL_MAX] = group.getMaxMillis();
+            values[COL_ROWS] = group.getRows();
+            values[COL_DUPLICATES] = group.getDuplicateCount();
+            values[COL_DISTINCT] = group.getDistinctParameterSets();
+            values[COL_PER_DISTINCT] = group.getExecutionsPerParameterSet();
+        }
+    }
+
+    private static final class StatisticsTableModel extends AbstractTableModel {
+        private static final long serialVersionUID = 1L;
+        private final List<Row> rows = new ArrayList<>();
+        private final Map<SqlStatistics.Group, Integer> rowIndex = new IdentityHashMap<>();
+
+        /**
+         * 加入新出现的分组，只重新读取更新戳有变化的分组
+         * <p>
+         * 变化的行合并为一个更新事件，排序器每次刷新只重新排序一次。
+         */
+        void update(List<SqlStatistics.Group> groups) {
+            int firstNew = rows.size();
+            int firstUpdated = Integer.MAX_VALUE;
+            int lastUpdated = -1;
+            for (SqlStatistics.Group group : groups) {
+                Integer index = rowIndex.get(group);
+                if (index == null) {
+                    rowIndex.put(group, rows.size());
+                    rows.add(new Row(group));
+                } else if (group.getStamp() != rows.get(index).stamp) {
+                    rows.get(index).read();
+                    firstUpdated = Math.min(firstUpdated, index);
+                    lastUpdated = Math.max(lastUpdated, index);
+                }
+            }
+            if (lastUpdated >= 0) {
+                fireTableRowsUpdated(firstUpdated, lastUpdated);
+            }
+            if (rows.size() > firstNew) {
+                fireTableRowsInserted(firstNew, rows.size() - 1);
+            }
+        }
+
+        void clear() {
+            rows.clear();
+            rowIndex.clear();
+            fireTableDataChanged();
+        }
+
+        long totalCount() {
+            long total = 0;
+            for (Row row : rows) {
+                total += (Long) row.values[COL_COUNT];
+            }
+            return total;
+        }
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMN_NAMES.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMN_NAMES[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            if (column == COL_KEY) {
+                return String.class;
+            }
+            return column == COL_MEAN || column == COL_PER_DISTINCT ? Double.class : Long.class;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            return rows.get(row).values[column];
+        }
+    }
+
+    /**
+     * 数值右对齐，未知（-1）显示为空，平均值保留一位小数
+     */
+    private static final class NumberRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 1L;
+
+        NumberRenderer() {
+            setHorizontalAlignment(SwingConstants.RIGHT);
+        }
+
+        @Override
+        protected void setValue(Object value) {
+            if (value instanceof Double) {
+                double number = (Double) value;
+                setText(number < 0 ? "" : String.format("%.1f", number));
+            } else if (value instanceof Long) {
+                long number = (Long) value;
+                setText(number < 0 ? "" : String.valueOf(number));
+            } else {
+                super.setValue(value);
+            }
+        }
+    }
+
+    /**
+     * 归一化语句通常很长，悬停时显示完整内容
+     */
+    private static final class KeyRenderer extends DefaultTableCellRenderer {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected void setValue(Object value) {
+            super.setValue(value);
+            setToolTipText(value != null ? value.toString() : null);
+        }
+    }
+}
@@ -1,11 +1,14 @@
 package com.cfin.novel.cfinmybatislog.ui;
 
+import com.cfin.novel.cfinmybatislog.manager.IngestionStats;
 import com.cfin.novel.cfinmybatislog.manager.MyBatisLogManager;
+import com.cfin.novel.cfinmybatislog.manager.SqlTemplateCache;
 import com.intellij.execution.filters.Filter;
 import com.intellij.execution.ui.ConsoleViewContentType;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.components.JBTextField;
@@ -46,9 +49,10 @@ import javax.swing.text.StyledDocument;
 import java.awt.*;
 import java.awt.datatransfer.StringSelection;
 import java.awt.event.KeyEvent;
+import java.awt.event.InputEvent;
 import java.awt.event.ActionEvent;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
 import java.util.prefs.Preferences;
 import java.util.concurrent.atomic.AtomicBoolean;
 import com.intellij.openapi.wm.ToolWindowFactory;
@@ -83,6 +87,7 @@ public class MyBatisLogToolWindow implements ToolWindowFactory, DumbAware {
     private static final int DEFAULT_FONT_SIZE = 12;
     private static final int MIN_FONT_SIZE = 8;
     private static final int MAX_FONT_SIZE = 24;
+    private static final int FILTER_DEBOUNCE_MS = 250; // 过滤输入防抖时间
     
     // 延迟初始化配置
     private static final boolean USE_LAZY_INIT = true;
@@ -172,8 +177,30 @@ public class MyBatisLogToolWindow implements ToolWindowFactory, DumbAware {
         
         // 添加到工具窗口
         LOG.info("Adding main panel to tool window");
-        toolWindow.getContentManager().addContent(
-            contentFactory.createContent(mainPanel, "", false));
+        Content logContent = contentFactory.createContent(mainPanel, "Log", false);
+        toolWindow.getContentManager().addContent(logContent);
+        
+        // 统计标签页，关闭工具窗口内容时停止刷新
+        MyBatisLogStatisticsPanel statisticsPanel = new MyBatisLogStatisticsPanel(project);
+        Content statisticsContent = contentFactory.createContent(statisticsPanel, "Statistics", false);
+        statisticsContent.setDisposer(statisticsPanel);
+        toolWindow.getContentManager().addContent(statisticsContent);
+        
+        // 固定的慢SQL标签页，跳转时切回日志标签页
+        MyBatisLogSlowQueriesPanel slowQueriesPanel = new MyBatisLogSlowQueriesPanel(project,
+                () -> toolWindow.getContentManager().setSelectedContent(logContent));
+        Content slowQueriesContent = contentFactory.createContent(slowQueriesPanel, "Slow Queries", false);
+        slowQueriesContent.setPinned(true);
+        slowQueriesContent.setDisposer(slowQueriesPanel);
+        toolWindow.getContentManager().addContent(slowQueriesContent);
+        
+        // 固定的 N+1 标签页，不受日志过滤条件影响
+        MyBatisLogNPlusOnePanel nPlusOnePanel = new MyBatisLogNPlusOnePanel(project,
+                () -> toolWindow.getContentManager().setSelectedContent(logContent));
+        Content nPlusOneContent = contentFactory.createContent(nPlusOnePanel, "N+1 Queries", false);
+        nPlusOneContent.setPinned(true);
+        nPlusOneContent.setDisposer(nPlusOnePanel);
+        toolWindow.getContentManager().addContent(nPlusOneContent);
         
         // 初始化日志管理器
         LOG.info("Initializing log manager");
@@ -232,7 +259,17 @@ public class MyBatisLogToolWindow implements ToolWindowFactory, DumbAware {
         statusCard.setLayout(new BorderLayout());
         statusCard.setBorder(JBUI.Borders.empty(8, 15));
         
-        statusLabel = new JLabel("MyBatis SQL Logger Ready");
+        statusLabel = new JLabel("MyBatis SQL Logger Ready") {
+            @Override
+            public String getToolTipText(MouseEvent event) {
+                // 鼠标悬停时显示SQL模板缓存的命中情况和显示队列的积压情况
+                return "<html>SQL template cache: " + SqlTemplateCache.getInstance(project).getStatsSummary()
+                        + "<br>Ingestion: " + IngestionStats.getInstance(project).getStatsSummary()
+                        + "<br>Display: " + MyBatisLogManager.getInstance(project).getFlushStatsSummary() + "</html>";
+            }
+        };
+        // 设置任意提示文本以注册到 ToolTipManager，实际内容由 getToolTipText(MouseEvent) 提供
+        statusLabel.setToolTipText("");
         statusLabel.setFont(statusLabel.getFont().deriveFont(Font.PLAIN, 11f));
         statusLabel.setForeground(UIUtil.getContextHelpForeground());
         statusCard.add(statusLabel, BorderLayout.WEST);
@@ -277,7 +314,14 @@ public class MyBatisLogToolWindow implements ToolWindowFactory, DumbAware {
      * 创建样式化的文本窗格
      */
     private JTextPane createStyledTextPane() {
-        JTextPane textPane = new JTextPane();
+        JTextPane textPane = new JTextPane() {
+            @Override
+            public void updateUI() {
+                super.updateUI();
+                // 切换主题时背景色跟随新主题，文本颜色为JBColor会自动跟随，无需重建文档
+                setBackground(UIUtil.getTextFieldBackground());
+            }
+        };
         textPane.setEditable(false);
         
         // 获取IDE当前编辑器字体
@@ -308,9 +352,83 @@ public class MyBatisLogToolWindow implements ToolWindowFactory, DumbAware {
             }
         });
         
+        installStatementActions(textPane);
+        
         return textPane;
     }
     
+    /**
+     * 为文本窗格添加按语句复制和跳转的快捷键及右键菜单
+     */
+    private void installStatementActions(JTextPane textPane) {
+        JPopupMenu menu = new JPopupMenu();
+        addStatementAction(textPane, menu, "Copy SQL at Caret",
+                KeyStroke.getKeyStroke(KeyEvent.VK_C, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK),
+                this::copySqlAtCaret);
+        menu.addSeparator();
+        addStatementAction(textPane, menu, "Previous Statement",
+                KeyStroke.getKeyStroke(KeyEvent.VK_UP, InputEvent.ALT_DOWN_MASK),
+                () -> navigateStatement(false, false));
+        addStatementAction(textPane, menu, "Next Statement",
+                KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, InputEvent.ALT_DOWN_MASK),
+                () -> navigateStatement(true, false));
+        addStatementAction(textPane, menu, "Previous Slow Statement",
+                KeyStroke.getKeyStroke(KeyEvent.VK_UP, InputEvent.ALT_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK),
+                () -> navigateStatement(false, true));
+        addStatementAction(textPane, menu, "Next Slow Statement",
+                KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, InputEvent.ALT_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK),
+                () -> navigateStatement(true, true));
+        textPane.setComponentPopupMenu(menu);
+        
+        // 右键时把光标移到点击位置，菜单中的操作作用于点击的语句
+        textPane.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent e) {
+                if (SwingUtilities.isRightMouseButton(e) && textPane.getSelectionStart() == textPane.getSelectionEnd()) {
+                    int offset = textPane.viewToModel2D(e.getPoint());
+                    if (offset >= 0) {
+                        textPane.setCaretPosition(offset);
+                    }
+                }
+            }
+        });
+    }
+    
+    private void addStatementAction(JTextPane textPane, JPopupMenu menu, String name, KeyStroke keyStroke, Runnable action) {
+        Action swingAction = new AbstractAction(name) {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        };
+        swingAction.putValue(Action.ACCELERATOR_KEY, keyStroke);
+        textPane.getInputMap(JComponent.WHEN_FOCUSED).put(keyStroke, name);
+        textPane.getActionMap().put(name, swingAction);
+        menu.add(new JMenuItem(swingAction));
+    }
+    
+    /**
+     * 复制光标所在语句的完整SQL
+     */
+    private void copySqlAtCaret() {
+        String completeSql = MyBatisLogManager.getInstance(project).getCompleteSqlAt(logTextPane.getCaretPosition());
+        if (completeSql != null && !completeSql.isEmpty()) {
+            CopyPasteManager.getInstance().setContents(new StringSelection(completeSql));
+            showStatusMessage("Complete SQL copied to clipboard");
+        } else {
+            showStatusMessage("No SQL at caret");
+        }
+    }
+    
+    /**
+     * 跳转到下一条或上一条语句（或慢SQL）
+     */
+    private void navigateStatement(boolean forward, boolean slowOnly) {
+        if (!MyBatisLogManager.getInstance(project).navigateStatement(forward, slowOnly)) {
+            showStatusMessage(slowOnly ? "No slow statement found" : "No more statements");
+        }
+    }
+    
     /**
      * 创建样式化的滚动面板
      */
@@ -403,39 +521,25 @@ public class MyBatisLogToolWindow implements ToolWindowFactory, DumbAware {
         
         searchPanel.add(searchFieldContainer, BorderLayout.CENTER);
         
+        // 输入停顿后才过滤，连续输入只触发最后一次
+        Timer filterDebounce = new Timer(FILTER_DEBOUNCE_MS, e -> filterLogs(searchField.getText()));
+        filterDebounce.setRepeats(false);
+        
         // 添加搜索监听器 - 确保DocumentListener能正确响应事件
         DocumentListener searchListener = new DocumentListener() {
             @Override
             public void insertUpdate(DocumentEvent e) {
-                try {
-                    String searchText = searchField.getText();
-                    LOG.info("Filter text updated: " + searchText);
-                    filterLogs(searchText);
-                } catch (Exception ex) {
-                    LOG.error("Error handling insertUpdate: " + ex.getMessage(), ex);
-                }
+                filterDebounce.restart();
             }
 
             @Override
             public void removeUpdate(DocumentEvent e) {
-                try {
-                    String searchText = searchField.getText();
-                    LOG.info("Filter text updated: " + searchText);
-                    filterLogs(searchText);
-                } catch (Exception ex) {
-                    LOG.error("Error handling removeUpdate: " + ex.getMessage(), ex);
-                }
+                filterDebounce.restart();
             }
 
             @Override
             public void changedUpdate(DocumentEvent e) {
-                try {
-                    String searchText = searchField.getText();
-                    LOG.info("Filter text updated: " + searchText);
-                    filterLogs(searchText);
-                } catch (Exception ex) {
-                    LOG.error("Error handling changedUpdate: " + ex.getMessage(), ex);
-                }
+                filterDebounce.restart();
             }
         };
         
@@ -456,7 +560,17 @@ public class MyBatisLogToolWindow implements ToolWindowFactory, DumbAware {
     private JPanel createButtonPanel() {
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 8, 0));
         buttonPanel.setOpaque(false);
-        
+
+        // 排版显示开关：较长的SQL按子句分行、缩进，过长的 IN 列表折叠
+        JCheckBox formatCheckBox = new JCheckBox("Format SQL", MyBatisLogManager.getInstance(project).isFormatSql());
+        formatCheckBox.setToolTipText("Show long SQL with clause line breaks and indentation, collapsing long IN lists");
+        formatCheckBox.setOpaque(false);
+        formatCheckBox.addActionListener(e -> {
+            MyBatisLogManager.getInstance(project).setFormatSql(formatCheckBox.isSelected());
+            showStatusMessage(formatCheckBox.isSelected() ? "SQL formatting enabled" : "SQL formatting disabled");
+        });
+        buttonPanel.add(formatCheckBox);
+
         // 复制选择的内容按钮
         JButton copyButton = createStyledButton("Copy Selected", AllIcons.Actions.Copy, "Copy selected text to clipboard");
         copyButton.addActionListener(e -> {
@@ -475,9 +589,8 @@ public class MyBatisLogToolWindow implements ToolWindowFactory, DumbAware {
         // 复制完整SQL按钮
         JButton copySqlButton = createStyledButton("Copy SQL", AllIcons.Vcs.History, "Copy the latest complete SQL statement");
         copySqlButton.addActionListener(e -> {
-            String completeSql = findLatestCompleteSql();
+            String completeSql = MyBatisLogManager.getInstance(project).getLatestCompleteSql();
             if (completeSql != null && !completeSql.isEmpty()) {
-                completeSql = removeParamTypes(completeSql);
                 CopyPasteManager.getInstance().setContents(new StringSelection(completeSql));
                 showStatusMessage("Complete SQL copied to clipboard");
                 LOG.info("Copied complete SQL to clipboard");
@@ -568,8 +681,9 @@ public class MyBatisLogToolWindow implements ToolWindowFactory, DumbAware {
             // 获取MyBatisLogManager实例
             MyBatisLogManager manager = MyBatisLogManager.getInstance(project);
             if (manager != null) {
-                manager.filterLogs(trimmedText);
-                updateStatusLabel(trimmedText);
+                // 在后台线程中过滤，完成后回到EDT更新状态栏
+                updateStatusLabel(trimmedText, -1);
+                manager.filterLogs(trimmedText, matchCount -> updateStatusLabel(trimmedText, matchCount));
             } else {
                 LOG.error("Failed to get MyBatisLogManager instance for filtering");
             }
@@ -580,12 +694,17 @@ public class MyBatisLogToolWindow implements ToolWindowFactory, DumbAware {
     
     /**
      * 更新状态栏信息
+     * @param matchCount 匹配的SQL数量，过滤尚未完成时为-1
      */
-    private void updateStatusLabel(String searchText) {
+    private void updateStatusLabel(String searchText, int matchCount) {
         if (statusLabel != null) {
-            statusLabel.setText(searchText.isEmpty() 
-                    ? "MyBatis SQL Logger Ready" 
-                    : "Filtering: " + searchText);
+            if (searchText.isEmpty()) {
+                statusLabel.setText("MyBatis SQL Logger Ready");
+            } else if (matchCount < 0) {
+                statusLabel.setText("Filtering: " + searchText + " ...");
+            } else {
+                statusLabel.setText("Filtering: " + searchText + " (" + matchCount + " matched)");
+            }
         }
     }
     
@@ -705,12 +824,15 @@ public class MyBatisLogToolWindow implements ToolWindowFactory, DumbAware {
                                "JetBrains Mono" : Font.MONOSPACED;
             
             Font newFont = new Font(fontFamily, Font.PLAIN, fontSize);
-            textPane.setFont(newFont);
             
-            // 通知日志管理器字体已更改，可能需要重新格式化文本
+            // 由日志管理器设置字体，只修改文档样式，不重建日志内容
             if (project != null) {
                 MyBatisLogManager logManager = MyBatisLogManager.getInstance(project);
-                logManager.refreshDisplay();
+                logManager.setDisplayFont(newFont);
+            }
+            // 窗格尚未交给日志管理器时直接设置
+            if (!newFont.equals(textPane.getFont())) {
+                textPane.setFont(newFont);
             }
         }
     }
@@ -719,59 +841,6 @@ public class MyBatisLogToolWindow implements ToolWindowFactory, DumbAware {
         return logTextPane;
     }
     
-    /**
-     * 在日志文本中查找最新的完整SQL语句
-     * @return 完整SQL语句，如果没有找到则返回null
-     */
-    private String findLatestCompleteSql() {
-        String text = logTextPane.getText();
-        if (text == null || text.isEmpty()) {
-            return null;
-        }
-        
-        // 查找最后一个"Complete SQL:"行
-        Pattern pattern = Pattern.compile("Complete SQL:(.+)(\r?\n|$)");
-        Matcher matcher = pattern.matcher(text);
-        
-        String latestSql = null;
-        while (matcher.find()) {
-            latestSql = matcher.group(1).trim();
-        }
-        
-        return latestSql;
-    }
-    
-    /**
-     * 移除SQL字符串中的参数类型标记
-     * 例如: 'admin(String)' -> 'admin'
-     */
-    private String removeParamTypes(String sql) {
-        if (sql == null) return null;
-        
-        // 处理字符串类型参数 - 匹配单引号中的内容
-        Pattern stringPattern = Pattern.compile("'([^']*?)\\(([A-Za-z]+)\\)([^']*?)'");
-        Matcher stringMatcher = stringPattern.matcher(sql);
-        StringBuffer sb = new StringBuffer();
-        
-        while (stringMatcher.find()) {
-            String replacement = "'" + stringMatcher.group(1) + stringMatcher.group(3) + "'";
-            stringMatcher.appendReplacement(sb, Matcher.quoteReplacement(replacement));
-        }
-        stringMatcher.appendTail(sb);
-        
-        // 处理非字符串类型参数 - 数字、布尔值等不带引号的参数
-        Pattern nonStringPattern = Pattern.compile("\\b([\\d\\.]+|true|false|null)\\(([A-Za-z]+)\\)\\b");
-        Matcher nonStringMatcher = nonStringPattern.matcher(sb.toString());
-        sb = new StringBuffer();
-        
-        while (nonStringMatcher.find()) {
-            nonStringMatcher.appendReplacement(sb, nonStringMatcher.group(1));
-        }
-        nonStringMatcher.appendTail(sb);
-        
-        return sb.toString();
-    }
-
     /**
      * 重置UI状态并重新初始化所有组件
      * 用于恢复UI在出现问题时的状态
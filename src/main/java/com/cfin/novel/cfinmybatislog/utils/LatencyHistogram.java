@@ -0,0 +1,83 @@
+package com.cfin.novel.cfinmybatislog.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 固定内存的对数-线性延迟直方图（毫秒）
+ * <p>
+ * 0～{@value #SUB_BUCKETS}-1 毫秒每毫秒一个桶；之后每个2的幂区间再均分为 {@value #SUB_BUCKETS} 个桶，
+ * 分位数的相对误差不超过 1/{@value #SUB_BUCKETS}。桶的数量固定，与记录次数无关，
+ * 超出最大范围的值计入最后一个桶。
+ * <p>
+ * 记录只是一次原子自增，不加锁，可在多个线程中并发记录；读取分位数时各桶不是同一时刻的快照，只用于展示。
+ */
+public final class LatencyHistogram {
+    // 每个2的幂区间的桶数，必须是2的幂
+    private static final int SUB_BUCKETS = 8;
+    private static final int SUB_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+    // 最大可区分的指数：2^36 毫秒约两年，足够覆盖任何SQL耗时
+    private static final int MAX_EXPONENT = 36;
+    private static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * 记录一次耗时，负数忽略
+     */
+    public void record(long millis) {
+        if (millis < 0) {
+            return;
+        }
+        counts.incrementAndGet(bucketOf(millis));
+    }
+
+    /**
+     * 返回 {@code quantile}（0～1）分位数所在桶的上界；没有记录时返回-1
+     */
+    public long percentile(double quantile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKET_COUNT - 1);
+    }
+
+    static int bucketOf(long millis) {
+        if (millis < SUB_BUCKETS) {
+            return (int) millis;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(millis);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        // 最高位之后的 SUB_BITS 位决定区间内的子桶
+        int sub = (int) (millis >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 桶内的最大值
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+        int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BITS);
+        return (1L << exponent) + (sub + 1) * width - 1;
+    }
+}
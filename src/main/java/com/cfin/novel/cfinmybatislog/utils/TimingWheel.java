@@ -0,0 +1,224 @@
+package com.cfin.novel.cfinmybatislog.utils;
+
+/**
+ * 基于 {@link System#nanoTime()} 的分层时间轮
+ * <p>
+ * 每层有固定数量的槽位，槽位中是双向链表。添加、取消、重新调度都是 O(1)；
+ * {@link #advance} 每前进一个刻度只处理到期槽位中的条目，高层槽位中的条目在低层转满一圈时逐级下移，整体摊还 O(1)。
+ * 超出最高层范围的条目先放在最高层最远的槽位，到时重新计算位置。
+ * <p>
+ * 非线程安全，只能在同一个线程中使用。
+ *
+ * @param <T> 定时条目携带的对象类型
+ */
+public final class TimingWheel<T> {
+
+    /**
+     * 到期回调
+     */
+    public interface ExpiryHandler<T> {
+        void onExpired(T item);
+    }
+
+    /**
+     * 定时条目，由 {@link #schedule} 返回，可用于取消或重新调度
+     */
+    public static final class Timer<T> {
+        private final T item;
+        private long deadlineTick;
+        // 所在的层和槽位，用于 O(1) 摘除链表头
+        private int level;
+        private int index;
+        private Timer<T> prev;
+        private Timer<T> next;
+        private boolean scheduled;
+
+        private Timer(T item) {
+            this.item = item;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public boolean isScheduled() {
+            return scheduled;
+        }
+    }
+
+    private final long tickNanos;
+    private final long startNanos;
+    private final int bits;
+    private final int mask;
+    // 每层槽位的链表头
+    private final Timer<T>[][] slots;
+    // 最高层能表示的最大刻度差
+    private final long maxSpan;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param tickNanos 每个刻度的纳秒数
+     * @param slotsPerLevel 每层槽位数，会向上取整为2的幂
+     * @param levels 层数
+     * @param startNanos 起始时间
+     */
+    public TimingWheel(long tickNanos, int slotsPerLevel, int levels, long startNanos) {
+        int slotCount = Integer.highestOneBit(Math.max(2, slotsPerLevel - 1)) << 1;
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+        this.bits = Integer.numberOfTrailingZeros(slotCount);
+        this.mask = slotCount - 1;
+        this.slots = newSlots(levels, slotCount);
+        this.maxSpan = (1L << Math.min(62, bits * levels)) - 1;
+    }
+
+    // 不能直接创建泛型数组，数组只在本类中使用，不会存入其他类型的元素
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <T> Timer<T>[][] newSlots(int levels, int slotCount) {
+        return (Timer<T>[][]) new Timer[levels][slotCount];
+    }
+
+    /**
+     * 添加一个在 {@code deadlineNanos} 到期的条目
+     */
+    public Timer<T> schedule(T item, long deadlineNanos) {
+        Timer<T> timer = new Timer<>(item);
+        reschedule(timer, deadlineNanos);
+        return timer;
+    }
+
+    /**
+     * 修改条目的到期时间，已取消或已到期的条目会被重新加入
+     */
+    public void reschedule(Timer<T> timer, long deadlineNanos) {
+        if (timer.scheduled) {
+            unlink(timer);
+        }
+        // 当前刻度已处理过，最早只能在下一个刻度到期
+        timer.deadlineTick = Math.max(currentTick + 1, toTick(deadlineNanos));
+        insert(timer);
+    }
+
+    /**
+     * 取消条目，对已取消或已到期的条目无影响
+     */
+    public void cancel(Timer<T> timer) {
+        if (timer.scheduled) {
+            unlink(timer);
+        }
+    }
+
+    /**
+     * 推进到 {@code nowNanos}，依次回调所有到期条目
+     * @return 到期的条目数
+     */
+    public int advance(long nowNanos, ExpiryHandler<T> handler) {
+        // 只处理已经完整经过的刻度，保证条目不会提前到期
+        long targetTick = toTick(nowNanos) - 1;
+        if (size == 0) {
+            // 没有条目时直接跳到目标刻度
+            currentTick = Math.max(currentTick, targetTick);
+            return 0;
+        }
+
+        int expired = 0;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // 低层转满一圈时，把高层对应槽位的条目下移
+            for (int level = 1; level < slots.length; level++) {
+                if ((currentTick & ((1L << (bits * level)) - 1)) != 0) {
+                    break;
+                }
+                cascade(level, (int) ((currentTick >>> (bits * level)) & mask));
+            }
+
+            // 每次都从槽位头部取，回调中取消其他条目也不会破坏遍历；未到期的条目不会被放回当前槽位
+            int index = (int) (currentTick & mask);
+            Timer<T> timer;
+            while ((timer = slots[0][index]) != null) {
+                unlink(timer);
+                if (timer.deadlineTick <= currentTick) {
+                    expired++;
+                    handler.onExpired(timer.item);
+                } else {
+                    insert(timer);
+                }
+            }
+            if (size == 0) {
+                currentTick = Math.max(currentTick, targetTick);
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * 距下一个刻度的纳秒数，没有条目时返回0
+     */
+    public long nanosUntilNextTick(long nowNanos) {
+        if (size == 0) {
+            return 0;
+        }
+        long nextTickNanos = startNanos + (currentTick + 2) * tickNanos;
+        return Math.max(1, nextTickNanos - nowNanos);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void cascade(int level, int index) {
+        Timer<T> timer = slots[level][index];
+        slots[level][index] = null;
+        while (timer != null) {
+            Timer<T> next = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            timer.scheduled = false;
+            size--;
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    private void insert(Timer<T> timer) {
+        long delta = Math.min(timer.deadlineTick - currentTick, maxSpan);
+        long tick = currentTick + delta;
+        int level = 0;
+        while (level < slots.length - 1 && delta >= (1L << (bits * (level + 1)))) {
+            level++;
+        }
+        int index = (int) ((tick >>> (bits * level)) & mask);
+
+        Timer<T> head = slots[level][index];
+        timer.prev = null;
+        timer.next = head;
+        if (head != null) {
+            head.prev = timer;
+        }
+        slots[level][index] = timer;
+        timer.level = level;
+        timer.index = index;
+        timer.scheduled = true;
+        size++;
+    }
+
+    private void unlink(Timer<T> timer) {
+        if (timer.prev != null) {
+            timer.prev.next = timer.next;
+        } else {
+            slots[timer.level][timer.index] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.prev = timer.prev;
+        }
+        timer.prev = null;
+        timer.next = null;
+        timer.scheduled = false;
+        size--;
+    }
+
+    private long toTick(long nanos) {
+        return (nanos - startNanos) / tickNanos;
+    }
+}
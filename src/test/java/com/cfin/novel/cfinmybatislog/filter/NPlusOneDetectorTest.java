@@ -0,0 +1,133 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import com.cfin.novel.cfinmybatislog.manager.NPlusOneFindings;
+import com.cfin.novel.cfinmybatislog.manager.SqlStatementRecord;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class NPlusOneDetectorTest {
+
+    private static final int THRESHOLD = 3;
+    private static final long REQUEST_GAP = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final String PARENT_SQL = "SELECT * FROM t_order WHERE user_id = ?";
+    private static final String CHILD_SQL = "SELECT * FROM t_item WHERE order_id = ?";
+
+    private final List<NPlusOneFindings.Finding> findings = new ArrayList<>();
+    private NPlusOneDetector detector;
+    private long now;
+
+    @Before
+    public void setUp() {
+        detector = new NPlusOneDetector(findings::add, THRESHOLD, REQUEST_GAP);
+        now = TimeUnit.SECONDS.toNanos(1);
+    }
+
+    @Test
+    public void reportsOnlyAboveThreshold() {
+        SqlStatementRecord parent = execute(PARENT_SQL);
+        repeat(CHILD_SQL, THRESHOLD);
+        detector.expire(now + REQUEST_GAP + 1);
+        assertEquals(0, findings.size());
+
+        execute(PARENT_SQL);
+        SqlStatementRecord first = execute(CHILD_SQL);
+        repeat(CHILD_SQL, THRESHOLD);
+        detector.expire(now + REQUEST_GAP + 1);
+        assertEquals(1, findings.size());
+        NPlusOneFindings.Finding finding = findings.get(0);
+        assertEquals(THRESHOLD + 1, finding.getCount());
+        assertSame(first, finding.getChild());
+        assertEquals(PARENT_SQL, finding.getParent().getSql());
+        assertEquals("exec-1", finding.getThreadName());
+        assertEquals(parent.getTemplate().getFingerprintHash(), finding.getParent().getTemplate().getFingerprintHash());
+    }
+
+    @Test
+    public void runEndsWhenTemplateLeavesWindow() {
+        execute(PARENT_SQL);
+        repeat(CHILD_SQL, 5);
+        for (int i = 0; i < NPlusOneDetector.WINDOW - 1; i++) {
+            execute("SELECT * FROM t_other_" + i + " WHERE id = ?");
+        }
+        assertEquals(0, findings.size());
+        // 距最后一次执行满一个窗口时结束
+        execute("SELECT * FROM t_last WHERE id = ?");
+        assertEquals(1, findings.size());
+        assertEquals(5, findings.get(0).getCount());
+    }
+
+    @Test
+    public void runEndsAfterRequestGap() {
+        execute(PARENT_SQL);
+        repeat(CHILD_SQL, 5);
+        now += REQUEST_GAP + 1;
+        // 同一线程空闲后的下一条语句属于新的请求
+        execute(CHILD_SQL);
+        assertEquals(1, findings.size());
+        assertEquals(5, findings.get(0).getCount());
+        assertEquals(PARENT_SQL, findings.get(0).getParent().getSql());
+
+        // 没有后续语句时由 expire 结束
+        repeat(CHILD_SQL, 4);
+        detector.expire(now + REQUEST_GAP);
+        assertEquals(1, findings.size());
+        detector.expire(now + REQUEST_GAP + 1);
+        assertEquals(2, findings.size());
+        assertEquals(5, findings.get(1).getCount());
+        assertEquals(0, detector.nanosUntilNextExpiry(now));
+    }
+
+    @Test
+    public void repeatedParentStartsNewRun() {
+        // 线程池中的线程连续处理请求：每个请求执行一次父查询和4次子查询，中间没有空闲
+        List<SqlStatementRecord> parents = new ArrayList<>();
+        for (int request = 0; request < THRESHOLD; request++) {
+            parents.add(execute(PARENT_SQL));
+            repeat(CHILD_SQL, 4);
+        }
+        detector.expire(now + REQUEST_GAP + 1);
+        assertEquals(THRESHOLD, findings.size());
+        for (int i = 0; i < THRESHOLD; i++) {
+            assertEquals(4, findings.get(i).getCount());
+            assertSame(parents.get(i), findings.get(i).getParent());
+        }
+    }
+
+    @Test
+    public void threadsAreTrackedSeparately() {
+        execute(PARENT_SQL);
+        for (int i = 0; i < 4; i++) {
+            execute(CHILD_SQL, "exec-1");
+            execute(CHILD_SQL, "exec-2");
+        }
+        detector.expire(now + REQUEST_GAP + 1);
+        assertEquals(2, findings.size());
+        for (NPlusOneFindings.Finding finding : findings) {
+            assertEquals(4, finding.getCount());
+        }
+    }
+
+    private void repeat(String sql, int times) {
+        for (int i = 0; i < times; i++) {
+            execute(sql);
+        }
+    }
+
+    private SqlStatementRecord execute(String sql) {
+        return execute(sql, "exec-1");
+    }
+
+    private SqlStatementRecord execute(String sql, String thread) {
+        SqlStatementRecord record = new SqlStatementRecord(SqlTemplate.compile(sql), null,
+                "com.example.mapper.OrderMapper.select", thread, 1, 1, 0);
+        detector.onStatement(record, now);
+        return record;
+    }
+}
@@ -0,0 +1,163 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ParameterParserTest {
+
+    @Test
+    public void parsesTypedValues() {
+        SqlParameters params = ParameterParser.parse("1(Long), bob(String), 2024-01-01 10:00:00.0(Timestamp), 1.5(BigDecimal)");
+        assertParameters(params, "1", "Long", "bob", "String", "2024-01-01 10:00:00.0", "Timestamp", "1.5", "BigDecimal");
+        assertFalse(params.isIndexed());
+    }
+
+    @Test
+    public void stringValueContainingCommaAndParenthesis() {
+        assertParameters(ParameterParser.parse("a, (b)(String), 2(Integer)"), "a, (b)", "String", "2", "Integer");
+        assertParameters(ParameterParser.parse("a, b(String), c(String)"), "a, b", "String", "c", "String");
+    }
+
+    @Test
+    public void stringValueContainingTypeSuffix() {
+        // (Type) 后面不是逗号或行尾时属于值的一部分
+        assertParameters(ParameterParser.parse("x(Long)y(String), 1(Integer)"), "x(Long)y", "String", "1", "Integer");
+        assertParameters(ParameterParser.parse("(Long)(String)"), "(Long)", "String");
+    }
+
+    @Test
+    public void emptyValue() {
+        assertParameters(ParameterParser.parse("(String), 1(Integer)"), "", "String", "1", "Integer");
+        assertParameters(ParameterParser.parse(" (String)"), "", "String");
+    }
+
+    @Test
+    public void nullValues() {
+        SqlParameters params = ParameterParser.parse("null, 1(Integer), NULL");
+        assertParameters(params, "null", null, "1", "Integer", "NULL", null);
+        assertTrue(params.isNull(0));
+        assertFalse(params.isNull(1));
+        assertTrue(params.isNull(2));
+
+        // 带类型的 "null" 是字符串值
+        SqlParameters typed = ParameterParser.parse("null(String)");
+        assertParameters(typed, "null", "String");
+        assertFalse(typed.isNull(0));
+    }
+
+    @Test
+    public void trailingComma() {
+        assertParameters(ParameterParser.parse("1(Integer), "), "1", "Integer");
+        assertParameters(ParameterParser.parse("1(Integer),"), "1", "Integer");
+        assertParameters(ParameterParser.parse("1, 2,"), "1", null, "2", null);
+    }
+
+    @Test
+    public void unclosedType() {
+        assertParameters(ParameterParser.parse("abc(String"), "abc(String", null);
+        assertParameters(ParameterParser.parse("1(Integer), abc(Str"), "1", "Integer", "abc(Str", null);
+        assertParameters(ParameterParser.parse("(((("), "((((", null);
+    }
+
+    @Test
+    public void nestedParentheses() {
+        assertParameters(ParameterParser.parse("f(g(x))(String), 2(Long)"), "f(g(x))", "String", "2", "Long");
+        assertParameters(ParameterParser.parse("a(1)(String)"), "a(1)", "String");
+        assertParameters(ParameterParser.parse("))(String)"), "))", "String");
+    }
+
+    @Test
+    public void indexedList() {
+        SqlParameters params = ParameterParser.parse("[1: a (String), 2: 5 (Integer)]");
+        assertTrue(params.isIndexed());
+        assertParameters(params, "a", "String", "5", "Integer");
+        assertEquals(0, ParameterParser.parse("[]").size());
+    }
+
+    @Test
+    public void untypedList() {
+        assertParameters(ParameterParser.parse("'a, b', null, 3"), "'a, b'", null, "null", null, "3", null);
+    }
+
+    @Test
+    public void emptyInput() {
+        assertTrue(ParameterParser.parse("").isEmpty());
+        assertTrue(ParameterParser.parse("   ").isEmpty());
+    }
+
+    @Test
+    public void qualifiedAndArrayTypes() {
+        assertParameters(ParameterParser.parse("1(com.example.Status), 2(Status[])"),
+                "1", "com.example.Status", "2", "Status[]");
+    }
+
+    @Test
+    public void typeNamesAreShared() {
+        assertSame(ParameterParser.parse("1(String)").type(0), ParameterParser.parse("2(String)").type(0));
+        String custom = ParameterParser.parse("1(com.example.Status)").type(0);
+        assertSame(custom, ParameterParser.parse("2(com.example.Status)").type(0));
+    }
+
+    @Test
+    public void displayTypeInferredFromUntypedValue() {
+        SqlParameters params = ParameterParser.parse("null, 42, -3.5, 'a', TRUE, false, 2024-05-01 12:00:00, 2024-5-1, 1., abc");
+        String[] expected = {"NULL", "INTEGER", "DECIMAL", "STRING", "BOOLEAN", "BOOLEAN", "DATE", "STRING", "STRING", "STRING"};
+        assertEquals(expected.length, params.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], params.displayType(i));
+        }
+        assertEquals("Long", ParameterParser.parse("1(Long)").displayType(0));
+    }
+
+    @Test
+    public void fiveThousandParameters() {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            if (i > 0) {
+                line.append(", ");
+            }
+            switch (i % 4) {
+                case 0:
+                    line.append(i).append("(Long)");
+                    break;
+                case 1:
+                    line.append("v, (").append(i).append(")(String)");
+                    break;
+                case 2:
+                    line.append("null");
+                    break;
+                default:
+                    line.append("2024-01-01 00:00:00.").append(i).append("(Timestamp)");
+                    break;
+            }
+        }
+        SqlParameters params = ParameterParser.parse(line);
+        assertEquals(5000, params.size());
+        assertEquals("0", params.value(0));
+        assertEquals("v, (4997)", params.value(4997));
+        assertEquals("String", params.type(4997));
+        assertTrue(params.isNull(4998));
+        assertEquals("2024-01-01 00:00:00.4999", params.value(4999));
+        assertEquals("Timestamp", params.type(4999));
+    }
+
+    /**
+     * @param expected 依次为每个参数的值和类型
+     */
+    private static void assertParameters(SqlParameters params, String... expected) {
+        assertEquals(expected.length / 2, params.size());
+        for (int i = 0; i < params.size(); i++) {
+            assertEquals(expected[i * 2], params.value(i));
+            if (expected[i * 2 + 1] == null) {
+                assertNull(params.type(i));
+            } else {
+                assertEquals(expected[i * 2 + 1], params.type(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.cfin.novel.cfinmybatislog.filter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class SqlCorrelatorTest {
+
+    private static final long COMPLETE_AFTER = TimeUnit.SECONDS.toNanos(1);
+    private static final long ORPHAN_AFTER = TimeUnit.SECONDS.toNanos(10);
+    private static final long TIME_GRACE = TimeUnit.MILLISECONDS.toNanos(200);
+
+    private final List<SqlExecution> published = new ArrayList<>();
+    private SqlCorrelator correlator;
+    private long now;
+
+    @Before
+    public void setUp() {
+        correlator = new SqlCorrelator(published::add, COMPLETE_AFTER, ORPHAN_AFTER, TIME_GRACE);
+        now = System.nanoTime();
+    }
+
+    @Test
+    public void timeLineAfterTotalIsAttached() {
+        // 第一条执行时还不知道会有 Time 行，Total 时立即发布，耗时由时间戳推算
+        execute("exec-1", "12:00:00.100", "12:00:00.145");
+        feed("12:00:00.146 [exec-1] INFO  com.example.SqlTimer - Time: 44 ms");
+        assertEquals(1, published.size());
+        assertEquals(45, published.get(0).latencyMillis());
+
+        // 之后收到 Total 的执行等待 Time 行
+        execute("exec-1", "12:00:01.000", "12:00:01.070");
+        assertEquals(1, published.size());
+        feed("12:00:01.071 [exec-1] INFO  com.example.SqlTimer - Time: 68 ms");
+        assertEquals(2, published.size());
+        SqlExecution execution = published.get(1);
+        assertEquals(68, execution.latencyMillis());
+        assertEquals(1, execution.rows);
+        assertEquals("1(Long)", execution.params);
+        assertEquals(0, correlator.pendingCount());
+    }
+
+    @Test
+    public void heldExecutionIsPublishedWhenGraceExpires() {
+        feed("12:00:00.000 [exec-1] INFO  com.example.SqlTimer - Time: 1 ms");
+        execute("exec-1", "12:00:00.100", "12:00:00.130");
+        assertEquals(0, published.size());
+
+        correlator.expire(now + TIME_GRACE + TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(1, published.size());
+        assertEquals(30, published.get(0).latencyMillis());
+        // 等待 Time 行超时属于正常结束，不计入超时数量
+        assertEquals(0, correlator.getExpiredCount());
+    }
+
+    @Test
+    public void nextStatementOnSameThreadPublishesHeldExecution() {
+        feed("12:00:00.000 [exec-1] INFO  com.example.SqlTimer - Time: 1 ms");
+        execute("exec-1", "12:00:00.100", "12:00:00.120");
+        assertEquals(0, published.size());
+
+        feed("12:00:00.200 [exec-1] DEBUG c.e.mapper.UserMapper.selectById - ==>  Preparing: SELECT * FROM t_user WHERE id = ?");
+        assertEquals(1, published.size());
+        assertEquals(20, published.get(0).latencyMillis());
+    }
+
+    @Test
+    public void timeLinesAreMatchedPerThread() {
+        feed("12:00:00.000 [exec-1] INFO  com.example.SqlTimer - Time: 1 ms");
+        execute("exec-1", "12:00:00.100", "12:00:00.110");
+        execute("exec-2", "12:00:00.100", "12:00:00.190");
+        feed("12:00:00.191 [exec-2] INFO  com.example.SqlTimer - Time: 90 ms");
+        feed("12:00:00.192 [exec-1] INFO  com.example.SqlTimer - Time: 11 ms");
+        assertEquals(2, published.size());
+        assertEquals("exec-2", published.get(0).threadName);
+        assertEquals(90, published.get(0).latencyMillis());
+        assertEquals("exec-1", published.get(1).threadName);
+        assertEquals(11, published.get(1).latencyMillis());
+    }
+
+    @Test
+    public void timeLineBeforeTotalPublishesOnTotal() {
+        feed("12:00:00.000 [exec-1] INFO  com.example.SqlTimer - Time: 1 ms");
+        feed("12:00:00.100 [exec-1] DEBUG c.e.mapper.UserMapper.selectById - ==>  Preparing: SELECT * FROM t_user WHERE id = ?");
+        feed("12:00:00.101 [exec-1] DEBUG c.e.mapper.UserMapper.selectById - ==> Parameters: 1(Long)");
+        feed("12:00:00.120 [exec-1] INFO  com.example.SqlTimer - Time: 19 ms");
+        feed("12:00:00.121 [exec-1] DEBUG c.e.mapper.UserMapper.selectById - <==      Total: 1");
+        assertEquals(1, published.size());
+        assertEquals(19, published.get(0).latencyMillis());
+    }
+
+    @Test
+    public void latencyIsUnknownWithoutTimeLineOrMillis() {
+        feed("[exec-1] DEBUG c.e.mapper.UserMapper.selectById - ==>  Preparing: SELECT * FROM t_user WHERE id = ?");
+        feed("[exec-1] DEBUG c.e.mapper.UserMapper.selectById - ==> Parameters: 1(Long)");
+        feed("[exec-1] DEBUG c.e.mapper.UserMapper.selectById - <==      Total: 1");
+        assertEquals(1, published.size());
+        assertEquals(-1, published.get(0).latencyMillis());
+    }
+
+    @Test
+    public void elapsedMillisWrapsAroundMidnight() {
+        assertEquals(40, SqlCorrelator.elapsedMillis(
+                LogLineTokenizer.tokenize("23:59:59.980 x").timeOfDayMillis(),
+                LogLineTokenizer.tokenize("00:00:00.020 x").timeOfDayMillis()));
+        assertEquals(-1, SqlCorrelator.elapsedMillis(-1, 20));
+        assertEquals(-1, LogLineTokenizer.tokenize("2024-05-01 12:00:00 DEBUG x").timeOfDayMillis());
+        assertEquals(43_200_120, LogLineTokenizer.tokenize("2024-05-01 12:00:00,12 DEBUG x").timeOfDayMillis());
+    }
+
+    private void execute(String thread, String start, String end) {
+        String prefix = " [" + thread + "] DEBUG c.e.mapper.UserMapper.selectById - ";
+        feed(start + prefix + "==>  Preparing: SELECT * FROM t_user WHERE id = ?");
+        feed(start + prefix + "==> Parameters: 1(Long)");
+        feed(end + prefix + "<==      Total: 1");
+    }
+
+    private void feed(String text) {
+        LogLine line = LogLineTokenizer.tokenize(text);
+        switch (line.getKind()) {
+            case PREPARING:
+                correlator.onPreparing(line, line.payload(), now);
+                break;
+            case PARAMETERS:
+                correlator.onParameters(line, line.hasPayload() ? line.payload() : "", now);
+                break;
+            case TOTAL:
+                correlator.onTotal(line, now);
+                break;
+            case TIME:
+                correlator.onTime(line);
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.cfin.novel.cfinmybatislog.manager;
+
+import com.cfin.novel.cfinmybatislog.filter.ParameterParser;
+import com.cfin.novel.cfinmybatislog.filter.SqlTemplate;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class StatementIndexTest {
+
+    private static final String USER_SQL = "SELECT * FROM t_user WHERE id = ?";
+    private static final String ORDER_SQL = "SELECT * FROM t_order WHERE status = ? AND remark = ?";
+    private static final String USER_MAPPER = "com.example.mapper.UserMapper.selectById";
+    private static final String ORDER_MAPPER = "com.example.mapper.OrderMapper.selectByStatus";
+
+    private final StatementIndex index = new StatementIndex();
+    private final Map<Long, SqlStatementRecord> records = new HashMap<>();
+    private long nextSequence;
+
+    @Test
+    public void matchesSqlTableAndMapperSubstrings() {
+        add(USER_SQL, USER_MAPPER, "100001(Long)");
+        add(ORDER_SQL, ORDER_MAPPER, "PAID(String), first order(String)");
+        add(USER_SQL, USER_MAPPER, "100002(Long)");
+
+        assertQuery("t_user", 0, 2);
+        assertQuery("user", 0, 2);
+        assertQuery("ordermapper.select", 1);
+        assertQuery("status = ?", 1);
+        assertQuery("select", 0, 1, 2);
+        assertQuery("t_missing");
+    }
+
+    @Test
+    public void matchesParameterValueSubstrings() {
+        add(USER_SQL, USER_MAPPER, "100001(Long)");
+        add(ORDER_SQL, ORDER_MAPPER, "PAID(String), first order(String)");
+        add(USER_SQL, USER_MAPPER, "200001(Long)");
+
+        assertQuery("0000", 0, 2);
+        assertQuery("100001", 0);
+        assertQuery("'100001'", 0);
+        assertQuery("st ord", 1);
+        assertQuery("paid", 1);
+        // 片段都存在但不在同一个值中
+        assertQuery("paidfirst");
+        // 不足三个字符时参数值只能精确匹配
+        assertQuery("00");
+    }
+
+    @Test
+    public void skipsEvictedRecords() {
+        add(USER_SQL, USER_MAPPER, "100001(Long)");
+        add(USER_SQL, USER_MAPPER, "100002(Long)");
+        add(ORDER_SQL, ORDER_MAPPER, "PAID(String), x(String)");
+
+        assertArrayEquals(new long[]{1}, index.query("t_user", 1, records::get));
+        assertArrayEquals(new long[]{1}, index.query("1000", 1, records::get));
+    }
+
+    @Test
+    public void matchesAgreesWithQuery() {
+        String[] filters = {"t_user", "ordermapper", "1000", "paid", "irst ord", "00", "x", "t_missing"};
+        add(USER_SQL, USER_MAPPER, "100001(Long)");
+        add(ORDER_SQL, ORDER_MAPPER, "PAID(String), first order(String)");
+        add(ORDER_SQL, ORDER_MAPPER, "NEW(String), x(String)");
+        for (String filter : filters) {
+            long[] matched = index.query(filter, 0, records::get);
+            for (Map.Entry<Long, SqlStatementRecord> entry : records.entrySet()) {
+                boolean expected = Arrays.binarySearch(matched, entry.getKey()) >= 0;
+                assertEquals(filter, expected, index.matches(entry.getValue(), filter));
+            }
+        }
+        assertFalse(index.matches(records.get(0L), "order"));
+    }
+
+    private void add(String sql, String mapperId, String parameters) {
+        long sequence = nextSequence++;
+        SqlStatementRecord record = new SqlStatementRecord(SqlTemplate.compile(sql), ParameterParser.parse(parameters),
+                mapperId, "exec-1", 1, 1, 0);
+        records.put(sequence, record);
+        index.add(sequence, record, 0);
+    }
+
+    private void assertQuery(String filter, long... expected) {
+        assertArrayEquals(filter, expected, index.query(filter, 0, records::get));
+    }
+}